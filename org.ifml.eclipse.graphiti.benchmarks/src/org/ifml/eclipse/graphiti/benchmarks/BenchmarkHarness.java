@@ -0,0 +1,125 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the average time taken by benchmark operations, so that the performance of the library can be compared across commits.
+ * <p>
+ * A measurement runs warm-up iterations, whose results are discarded, followed by the measured iterations; each iteration repeats
+ * the operation until its time budget is exhausted. Results are printed to the standard output, one line per benchmark holding the
+ * tab-separated name, mean and standard deviation in nanoseconds per operation. The following system properties control the
+ * measurements:
+ * <ul>
+ * <li>{@code benchmark.warmupIterations}: the number of warm-up iterations (default 5);</li>
+ * <li>{@code benchmark.iterations}: the number of measured iterations (default 10);</li>
+ * <li>{@code benchmark.iterationMillis}: the duration of each iteration in milliseconds (default 200);</li>
+ * <li>{@code benchmark.depth} and {@code benchmark.fanOut}: the shape of the {@link SyntheticDiagrams synthetic diagrams} (default
+ * 4 and 5).</li>
+ * </ul>
+ */
+final class BenchmarkHarness {
+
+    /** The number of nested container levels of the synthetic diagrams. */
+    static final int DEPTH = Integer.getInteger("benchmark.depth", 4);
+
+    /** The number of child containers of each non-leaf container of the synthetic diagrams. */
+    static final int FAN_OUT = Integer.getInteger("benchmark.fanOut", 5);
+
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("benchmark.warmupIterations", 5);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 10);
+
+    private static final long ITERATION_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("benchmark.iterationMillis", 200));
+
+    private static final int BATCH_SIZE = 16;
+
+    private static volatile long sink;
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * An operation whose time is measured.
+     */
+    interface Operation {
+
+        /**
+         * Runs the operation once.
+         * 
+         * @return a value depending on the outcome of the operation, which is consumed so that the operation cannot be optimized
+         *         away.
+         */
+        long run();
+
+    }
+
+    /**
+     * Returns the name of a benchmark run on the synthetic diagrams, including their shape.
+     * 
+     * @param name
+     *            the benchmark name.
+     * @return the qualified name.
+     */
+    static String onDiagram(String name) {
+        return name + "[depth=" + DEPTH + ",fanOut=" + FAN_OUT + "]";
+    }
+
+    /**
+     * Measures an operation and prints the result.
+     * 
+     * @param name
+     *            the benchmark name.
+     * @param operation
+     *            the operation.
+     * @return the mean time of the operation, in nanoseconds.
+     */
+    static double measure(String name, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(operation);
+        }
+        double[] times = new double[ITERATIONS];
+        double sum = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            times[i] = iterate(operation);
+            sum += times[i];
+        }
+        double mean = sum / ITERATIONS;
+        double squares = 0;
+        for (double time : times) {
+            squares += (time - mean) * (time - mean);
+        }
+        double deviation = (ITERATIONS > 1) ? Math.sqrt(squares / (ITERATIONS - 1)) : 0;
+        report(name, String.format(Locale.ROOT, "%.1f\t%.1f", mean, deviation));
+        return mean;
+    }
+
+    /**
+     * Prints a value measured by a benchmark, such as a size, in the same format as the measured times.
+     * 
+     * @param name
+     *            the benchmark name.
+     * @param value
+     *            the value.
+     */
+    static void report(String name, Object value) {
+        System.out.println(name + "\t" + value);
+    }
+
+    private static double iterate(Operation operation) {
+        long result = 0;
+        long count = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                result += operation.run();
+            }
+            count += BATCH_SIZE;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        sink += result;
+        return (double) elapsed / count;
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.DEPTH;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.FAN_OUT;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.measure;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.onDiagram;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.report;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.Operation;
+import org.ifml.eclipse.graphiti.diagrams.CompactDiagramResource;
+import org.ifml.eclipse.graphiti.diagrams.DiagramFileFormat;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Compares the size and the save and load times of a synthetic diagram stored by a {@link CompactDiagramResource} in each
+ * {@link DiagramFileFormat}.
+ * <p>
+ * The diagram and its business objects are stored in memory, and every object is given an XMI identifier, so that the binary
+ * formats also pay for keeping the identifiers.
+ */
+public class DiagramFormatBenchmark {
+
+    private static final URI DIAGRAM_URI = URI.createURI("benchmark.diagram");
+
+    private static CompactDiagramResource resource;
+
+    /**
+     * Creates the resource holding the synthetic diagram shared by the benchmarks.
+     */
+    @BeforeClass
+    public static void setUp() {
+        Diagram diagram = SyntheticDiagrams.create(DiagramFormatBenchmark.class.getSimpleName(), DEPTH, FAN_OUT, true);
+        resource = new CompactDiagramResource(DIAGRAM_URI, DiagramFileFormat.XMI);
+        resource.getContents().add(diagram);
+        resource.getContents().addAll(diagram.getLink().getBusinessObjects());
+        for (TreeIterator<EObject> i = resource.getAllContents(); i.hasNext();) {
+            resource.setID(i.next(), EcoreUtil.generateUUID());
+        }
+    }
+
+    /**
+     * Benchmarks the XMI format.
+     */
+    @Test
+    public void xmi() {
+        benchmark(DiagramFileFormat.XMI);
+    }
+
+    /**
+     * Benchmarks the binary format.
+     */
+    @Test
+    public void binary() {
+        benchmark(DiagramFileFormat.BINARY);
+    }
+
+    /**
+     * Benchmarks the compressed binary format.
+     */
+    @Test
+    public void compressedBinary() {
+        benchmark(DiagramFileFormat.COMPRESSED_BINARY);
+    }
+
+    private static void benchmark(final DiagramFileFormat format) {
+        final byte[] contents = save(format);
+        report(onDiagram("CompactDiagramResource.size(" + format + ")"), contents.length);
+        measure(onDiagram("CompactDiagramResource.save(" + format + ")"), new Operation() {
+            @Override
+            public long run() {
+                return save(format).length;
+            }
+        });
+        measure(onDiagram("CompactDiagramResource.load(" + format + ")"), new Operation() {
+            @Override
+            public long run() {
+                return load(contents).getContents().size();
+            }
+        });
+    }
+
+    private static byte[] save(DiagramFileFormat format) {
+        resource.setSaveFormat(format);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            resource.save(out, null);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static CompactDiagramResource load(byte[] contents) {
+        ResourceSet resourceSet = new ResourceSetImpl();
+        CompactDiagramResource loaded = new CompactDiagramResource(DIAGRAM_URI, DiagramFileFormat.XMI);
+        resourceSet.getResources().add(loaded);
+        try {
+            loaded.load(new ByteArrayInputStream(contents), null);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return loaded;
+    }
+
+}
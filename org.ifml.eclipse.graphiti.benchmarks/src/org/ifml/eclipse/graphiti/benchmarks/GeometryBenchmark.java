@@ -0,0 +1,161 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.DEPTH;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.FAN_OUT;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.measure;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.onDiagram;
+
+import java.util.List;
+
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.Operation;
+import org.ifml.eclipse.graphiti.geometry.Dimensions;
+import org.ifml.eclipse.graphiti.geometry.Rectangles;
+import org.ifml.eclipse.graphiti.services.GaServices;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Benchmarks the geometry helpers of {@link GaServices}, {@link Rectangles} and {@link Dimensions} on the shapes of a synthetic
+ * diagram.
+ */
+public class GeometryBenchmark {
+
+    private static final int POINT_COUNT = 64;
+
+    private static int[] coordinates;
+
+    private static List<ContainerShape> shapes;
+
+    private static List<Rectangle> rectangles;
+
+    private static List<Dimension> dimensions;
+
+    /**
+     * Creates the synthetic diagram and the coordinates shared by the benchmarks.
+     */
+    @BeforeClass
+    public static void setUp() {
+        Diagram diagram = SyntheticDiagrams.create(GeometryBenchmark.class.getSimpleName(), DEPTH, FAN_OUT, false);
+        shapes = SyntheticDiagrams.getContainerShapes(diagram);
+        rectangles = Lists.newArrayList();
+        dimensions = Lists.newArrayList();
+        for (ContainerShape shape : shapes) {
+            GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+            rectangles.add(new Rectangle(ga.getX(), ga.getY(), ga.getWidth(), ga.getHeight()));
+            dimensions.add(new Dimension(ga.getWidth(), ga.getHeight()));
+        }
+        coordinates = new int[2 * POINT_COUNT];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = (i * 7919) % 1000;
+        }
+    }
+
+    /**
+     * Benchmarks {@link GaServices#getMaxX(int[])}.
+     */
+    @Test
+    public void getMaxX() {
+        measure("GaServices.getMaxX[points=" + POINT_COUNT + "]", new Operation() {
+            @Override
+            public long run() {
+                return GaServices.getMaxX(coordinates);
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link GaServices#getMaxY(int[])}.
+     */
+    @Test
+    public void getMaxY() {
+        measure("GaServices.getMaxY[points=" + POINT_COUNT + "]", new Operation() {
+            @Override
+            public long run() {
+                return GaServices.getMaxY(coordinates);
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link GaServices#toAbsolute(int, int, ContainerShape)} on every container shape of the diagram.
+     */
+    @Test
+    public void toAbsolutePoint() {
+        measure(onDiagram("GaServices.toAbsolute(point)"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    result += GaServices.toAbsolute(1, 1, shape).x;
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link GaServices#toAbsolute(int[], ContainerShape)} on every container shape of the diagram.
+     */
+    @Test
+    public void toAbsoluteArray() {
+        final int[] xy = new int[coordinates.length];
+        measure(onDiagram("GaServices.toAbsolute(array)"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    System.arraycopy(coordinates, 0, xy, 0, xy.length);
+                    result += GaServices.toAbsolute(xy, shape)[0];
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link Rectangles#union(List)} on the bounds of all the container shapes of the diagram.
+     */
+    @Test
+    public void union() {
+        measure(onDiagram("Rectangles.union"), new Operation() {
+            @Override
+            public long run() {
+                return Rectangles.union(rectangles).width;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link Dimensions#maxWidth(Iterable)} on the sizes of all the container shapes of the diagram.
+     */
+    @Test
+    public void maxWidth() {
+        measure(onDiagram("Dimensions.maxWidth"), new Operation() {
+            @Override
+            public long run() {
+                return Dimensions.maxWidth(dimensions);
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link Dimensions#sumHeight(Iterable)} on the sizes of all the container shapes of the diagram.
+     */
+    @Test
+    public void sumHeight() {
+        measure(onDiagram("Dimensions.sumHeight"), new Operation() {
+            @Override
+            public long run() {
+                return Dimensions.sumHeight(dimensions);
+            }
+        });
+    }
+
+}
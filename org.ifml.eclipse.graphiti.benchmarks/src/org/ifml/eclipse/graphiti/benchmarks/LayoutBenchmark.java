@@ -0,0 +1,124 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.DEPTH;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.FAN_OUT;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.measure;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.onDiagram;
+
+import java.util.List;
+
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.Operation;
+import org.ifml.eclipse.graphiti.features.LayoutFeatures;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Benchmarks the resize helpers of {@link LayoutFeatures} on all the container shapes of a synthetic diagram, outside any
+ * transaction.
+ */
+public class LayoutBenchmark {
+
+    private List<ContainerShape> shapes;
+
+    /**
+     * Creates a new synthetic diagram, since the benchmarks modify it.
+     */
+    @Before
+    public void setUp() {
+        Diagram diagram = SyntheticDiagrams.create(LayoutBenchmark.class.getSimpleName(), DEPTH, FAN_OUT, false);
+        shapes = SyntheticDiagrams.getContainerShapes(diagram);
+    }
+
+    /**
+     * Benchmarks {@link LayoutFeatures#resize(ContainerShape, int, int)} when every shape is enlarged.
+     */
+    @Test
+    public void resizeChanged() {
+        measure(onDiagram("LayoutFeatures.resize(changed)"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+                    int width = ga.getWidth();
+                    int height = ga.getHeight();
+                    ga.setWidth(0);
+                    ga.setHeight(0);
+                    if (LayoutFeatures.resize(shape, width, height)) {
+                        result++;
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link LayoutFeatures#resize(ContainerShape, int, int)} when every shape is already large enough.
+     */
+    @Test
+    public void resizeUnchanged() {
+        measure(onDiagram("LayoutFeatures.resize(unchanged)"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    if (LayoutFeatures.resize(shape, 1, 1)) {
+                        result++;
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link LayoutFeatures#resizeChildrenHorizontally(ContainerShape)} when neither the containers nor their children
+     * changed since the previous pass.
+     */
+    @Test
+    public void resizeChildrenHorizontallyClean() {
+        measure(onDiagram("LayoutFeatures.resizeChildrenHorizontally(clean)"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    if (LayoutFeatures.resizeChildrenHorizontally(shape)) {
+                        result++;
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks {@link LayoutFeatures#resizeChildrenHorizontally(ContainerShape)} when the width of every container changed since
+     * the previous pass.
+     */
+    @Test
+    public void resizeChildrenHorizontallyDirty() {
+        measure(onDiagram("LayoutFeatures.resizeChildrenHorizontally(dirty)"), new Operation() {
+
+            private int delta = 1;
+
+            @Override
+            public long run() {
+                long result = 0;
+                delta = -delta;
+                for (ContainerShape shape : shapes) {
+                    GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+                    ga.setWidth(ga.getWidth() + delta);
+                    if (LayoutFeatures.resizeChildrenHorizontally(shape)) {
+                        result++;
+                    }
+                }
+                return result;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.DEPTH;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.FAN_OUT;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.measure;
+import static org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.onDiagram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.graphiti.dt.IDiagramTypeProvider;
+import org.eclipse.graphiti.features.context.IAddContext;
+import org.eclipse.graphiti.mm.algorithms.Rectangle;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.eclipse.graphiti.pattern.IFeatureProviderWithPatterns;
+import org.ifml.eclipse.graphiti.benchmarks.BenchmarkHarness.Operation;
+import org.ifml.eclipse.graphiti.geometry.Bounds;
+import org.ifml.eclipse.graphiti.patterns.AbstractGfEmfShapePattern;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+/**
+ * Benchmarks the helpers of {@link AbstractGfEmfShapePattern} on all the container shapes of a synthetic diagram.
+ * <p>
+ * The pattern is bound to a stub feature provider, which only provides the diagram, so that no diagram editor is needed.
+ */
+public class PatternBenchmark {
+
+    private static List<ContainerShape> shapes;
+
+    private static List<EObject> businessObjects;
+
+    private static BenchmarkPattern pattern;
+
+    /**
+     * Creates the synthetic diagram and the pattern shared by the benchmarks.
+     */
+    @BeforeClass
+    public static void setUp() {
+        Diagram diagram = SyntheticDiagrams.create(PatternBenchmark.class.getSimpleName(), DEPTH, FAN_OUT, false);
+        shapes = SyntheticDiagrams.getContainerShapes(diagram);
+        businessObjects = SyntheticDiagrams.getBusinessObjects(diagram);
+        pattern = new BenchmarkPattern();
+        pattern.setFeatureProvider(createFeatureProvider(diagram));
+    }
+
+    /**
+     * Benchmarks {@link AbstractGfEmfShapePattern#getGa(ContainerShape, Class, int...)}.
+     */
+    @Test
+    public void getGa() {
+        measure(onDiagram("AbstractGfEmfShapePattern.getGa"), new Operation() {
+            @Override
+            public long run() {
+                long result = 0;
+                for (ContainerShape shape : shapes) {
+                    result += AbstractGfEmfShapePattern.getGa(shape, Rectangle.class).getWidth();
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks the calculation of the list of bounds of the shapes linked to a list of business objects.
+     */
+    @Test
+    public void calculateBounds() {
+        measure(onDiagram("AbstractGfEmfShapePattern.calculateBounds(list)"), new Operation() {
+            @Override
+            public long run() {
+                return pattern.calculateBounds().get(0).width;
+            }
+        });
+    }
+
+    /**
+     * Benchmarks the calculation of the union of the bounds of the shapes linked to a list of business objects.
+     */
+    @Test
+    public void calculateBoundsInPlace() {
+        final Bounds bounds = new Bounds();
+        measure(onDiagram("AbstractGfEmfShapePattern.calculateBounds(bounds)"), new Operation() {
+            @Override
+            public long run() {
+                return pattern.calculateBounds(bounds.reset()).getMaxX();
+            }
+        });
+    }
+
+    private static IFeatureProviderWithPatterns createFeatureProvider(Diagram diagram) {
+        IDiagramTypeProvider diagramTypeProvider = newStub(IDiagramTypeProvider.class, "getDiagram", diagram);
+        return newStub(IFeatureProviderWithPatterns.class, "getDiagramTypeProvider", diagramTypeProvider);
+    }
+
+    /**
+     * Creates a stub implementing an interface with a single method returning a fixed result; the other methods return
+     * {@code null}, except those of {@link Object}, which are based on identity.
+     */
+    private static <T> T newStub(final Class<T> type, final String methodName, final Object result) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals(methodName)) {
+                    return result;
+                } else if (name.equals("equals") && (args != null) && (args.length == 1)) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode") && (args == null)) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("toString") && (args == null)) {
+                    return type.getSimpleName() + " stub";
+                }
+                return null;
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * A pattern exposing the bounds calculations to the benchmarks.
+     */
+    private static final class BenchmarkPattern extends AbstractGfEmfShapePattern<EAnnotation> {
+
+        BenchmarkPattern() {
+            super(EAnnotation.class);
+        }
+
+        @Override
+        public EClass getEClass() {
+            return EcorePackage.Literals.EANNOTATION;
+        }
+
+        List<org.eclipse.draw2d.geometry.Rectangle> calculateBounds() {
+            return calculateBounds(businessObjects);
+        }
+
+        Bounds calculateBounds(Bounds bounds) {
+            return calculateBounds(businessObjects, bounds);
+        }
+
+        @Override
+        protected boolean canAddTo(EObject parentObject) {
+            return false;
+        }
+
+        @Override
+        protected PictogramElement addPictogramElement(IAddContext context) {
+            return null; // never reached: the benchmarks only look up and measure existing shapes
+        }
+
+        @Override
+        protected Optional<EReference> getContainmentReference(EObject parentObject, EObject childObject) {
+            return Optional.absent();
+        }
+
+    }
+
+}
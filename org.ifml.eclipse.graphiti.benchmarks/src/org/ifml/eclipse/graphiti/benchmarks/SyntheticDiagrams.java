@@ -0,0 +1,175 @@
+package org.ifml.eclipse.graphiti.benchmarks;
+
+import java.util.List;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.Anchor;
+import org.eclipse.graphiti.mm.pictograms.Connection;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramLink;
+import org.eclipse.graphiti.mm.pictograms.PictogramsFactory;
+import org.eclipse.graphiti.mm.pictograms.Shape;
+import org.eclipse.graphiti.services.Graphiti;
+import org.eclipse.graphiti.services.IGaService;
+import org.eclipse.graphiti.services.IPeCreateService;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Generates synthetic diagrams having a regular structure, for profiling and for comparing the performance of layout and
+ * serialization code across versions.
+ * <p>
+ * The generated diagrams do not require a workbench: every container shape is linked to a business object, has a rectangle, a
+ * horizontal separator child shape and {@code fanOut} child container shapes, down to {@code depth} levels. Sibling containers are
+ * optionally connected in sequence.
+ */
+public final class SyntheticDiagrams {
+
+    /** The diagram type identifier of the generated diagrams. */
+    public static final String DIAGRAM_TYPE_ID = "org.ifml.eclipse.graphiti.synthetic";
+
+    private static final int LEAF_WIDTH = 100;
+
+    private static final int LEAF_HEIGHT = 40;
+
+    private static final int HEADER_HEIGHT = 20;
+
+    private static final int PADDING = 10;
+
+    private SyntheticDiagrams() {
+    }
+
+    /**
+     * Creates a new synthetic diagram.
+     * 
+     * @param name
+     *            the diagram name.
+     * @param depth
+     *            the number of nested container levels.
+     * @param fanOut
+     *            the number of child containers of each non-leaf container.
+     * @param connected
+     *            whether sibling containers are connected in sequence.
+     * @return the new diagram.
+     */
+    public static Diagram create(String name, int depth, int fanOut, boolean connected) {
+        Preconditions.checkArgument(depth >= 0, "Invalid depth: %s", depth);
+        Preconditions.checkArgument(fanOut >= 0, "Invalid fan-out: %s", fanOut);
+        Diagram diagram = Graphiti.getPeCreateService().createDiagram(DIAGRAM_TYPE_ID, name, false);
+        EAnnotation root = EcoreFactory.eINSTANCE.createEAnnotation();
+        root.setSource(name);
+        link(diagram, diagram, root);
+        addChildren(diagram, diagram, root, depth, fanOut, connected);
+        return diagram;
+    }
+
+    /**
+     * Returns the container shapes of a diagram, excluding the diagram itself, in depth-first pre-order.
+     * 
+     * @param diagram
+     *            the diagram.
+     * @return the list of container shapes.
+     */
+    public static List<ContainerShape> getContainerShapes(Diagram diagram) {
+        List<ContainerShape> shapes = Lists.newArrayList();
+        for (TreeIterator<EObject> i = diagram.eAllContents(); i.hasNext();) {
+            EObject eObject = i.next();
+            if (eObject instanceof ContainerShape) {
+                shapes.add((ContainerShape) eObject);
+            } else if (!(eObject instanceof Shape)) {
+                i.prune();
+            }
+        }
+        return shapes;
+    }
+
+    /**
+     * Returns the business objects linked to the container shapes of a diagram, excluding the diagram itself.
+     * 
+     * @param diagram
+     *            the diagram.
+     * @return the list of business objects.
+     */
+    public static List<EObject> getBusinessObjects(Diagram diagram) {
+        List<EObject> businessObjects = Lists.newArrayList();
+        for (ContainerShape shape : getContainerShapes(diagram)) {
+            businessObjects.addAll(shape.getLink().getBusinessObjects());
+        }
+        return businessObjects;
+    }
+
+    /**
+     * Returns the number of container shapes of a synthetic diagram, excluding the diagram itself.
+     * 
+     * @param depth
+     *            the number of nested container levels.
+     * @param fanOut
+     *            the number of child containers of each non-leaf container.
+     * @return the number of container shapes.
+     */
+    public static long getContainerCount(int depth, int fanOut) {
+        long count = 0;
+        long levelCount = 1;
+        for (int i = 0; i < depth; i++) {
+            levelCount *= fanOut;
+            count += levelCount;
+        }
+        return count;
+    }
+
+    private static void addChildren(Diagram diagram, ContainerShape parent, EAnnotation parentObject, int depth, int fanOut,
+            boolean connected) {
+        if (depth == 0) {
+            return;
+        }
+        IPeCreateService peCreateService = Graphiti.getPeCreateService();
+        IGaService gaService = Graphiti.getGaService();
+        List<Anchor> anchors = Lists.newArrayList();
+        int y = (parent instanceof Diagram) ? PADDING : HEADER_HEIGHT + PADDING;
+        for (int i = 0; i < fanOut; i++) {
+            EAnnotation childObject = EcoreFactory.eINSTANCE.createEAnnotation();
+            childObject.setSource(parentObject.getSource() + "." + i);
+            parentObject.getContents().add(childObject);
+
+            ContainerShape shape = peCreateService.createContainerShape(parent, true);
+            GraphicsAlgorithm ga = gaService.createRectangle(shape);
+            link(diagram, shape, childObject);
+            Shape separator = peCreateService.createShape(shape, false);
+            gaService.createPolyline(separator, new int[] { 0, HEADER_HEIGHT, LEAF_WIDTH, HEADER_HEIGHT });
+            anchors.add(peCreateService.createChopboxAnchor(shape));
+
+            addChildren(diagram, shape, childObject, depth - 1, fanOut, connected);
+            int width = LEAF_WIDTH;
+            int height = LEAF_HEIGHT;
+            if ((depth > 1) && (fanOut > 0)) {
+                GraphicsAlgorithm lastChildGa = shape.getChildren().get(shape.getChildren().size() - 1).getGraphicsAlgorithm();
+                width = Math.max(width, lastChildGa.getWidth() + 2 * PADDING);
+                height = lastChildGa.getY() + lastChildGa.getHeight() + PADDING;
+            }
+            gaService.setLocationAndSize(ga, PADDING, y, width, height);
+            y += height + PADDING;
+        }
+        if (connected) {
+            for (int i = 1; i < anchors.size(); i++) {
+                Connection connection = peCreateService.createFreeFormConnection(diagram);
+                connection.setStart(anchors.get(i - 1));
+                connection.setEnd(anchors.get(i));
+                gaService.createPolyline(connection);
+            }
+        }
+    }
+
+    private static void link(Diagram diagram, Shape shape, EAnnotation businessObject) {
+        PictogramLink link = PictogramsFactory.eINSTANCE.createPictogramLink();
+        link.setPictogramElement(shape);
+        link.getBusinessObjects().add(businessObject);
+        diagram.getPictogramLinks().add(link);
+    }
+
+}
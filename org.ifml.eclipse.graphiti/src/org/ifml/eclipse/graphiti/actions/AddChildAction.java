@@ -1,6 +1,8 @@
 package org.ifml.eclipse.graphiti.actions;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.emf.common.command.Command;
 import org.eclipse.emf.ecore.EClass;
@@ -9,6 +11,8 @@ import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.edit.command.AddCommand;
 import org.eclipse.emf.edit.command.SetCommand;
+import org.eclipse.emf.transaction.ResourceSetChangeEvent;
+import org.eclipse.emf.transaction.ResourceSetListenerImpl;
 import org.eclipse.emf.transaction.TransactionalEditingDomain;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.StructuredSelection;
@@ -17,14 +21,24 @@ import org.ifml.eclipse.ui.Workbenches;
 import org.ifml.eclipse.ui.actions.ContextAction;
 import org.ifml.eclipse.ui.widgets.Displays;
 
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+
 /**
  * An action able to add a newly created child {@link EObject} to a parent {@link EObject} using a specific containment feature.
+ * <p>
+ * The enablement is cached for the current context, selection and model state, so that menu and toolbar updates do not resolve the
+ * selection again until either the selection or the model changes.
  * 
  * @param <T>
  *            the
  */
 public final class AddChildAction<T extends EObject> extends ContextAction<T> {
 
+    private static final Map<TransactionalEditingDomain, AtomicLong> modificationStamps = new MapMaker().weakKeys().makeMap();
+
     private final EClass parentClass;
 
     private final EClass childClass;
@@ -33,6 +47,16 @@ public final class AddChildAction<T extends EObject> extends ContextAction<T> {
 
     private final TransactionalEditingDomain domain;
 
+    private final AtomicLong modificationStamp;
+
+    private Object cachedContext;
+
+    private ISelection cachedSelection;
+
+    private long cachedStamp = -1;
+
+    private boolean cachedEnabled;
+
     /**
      * Constructs a new action.
      * 
@@ -51,44 +75,105 @@ public final class AddChildAction<T extends EObject> extends ContextAction<T> {
         this.childClass = childClass;
         this.containmentFeature = containmentFeature;
         this.domain = domain;
+        this.modificationStamp = getModificationStamp(domain);
+    }
+
+    private static AtomicLong getModificationStamp(TransactionalEditingDomain domain) {
+        synchronized (modificationStamps) {
+            AtomicLong stamp = modificationStamps.get(domain);
+            if (stamp == null) {
+                stamp = new AtomicLong();
+                domain.addResourceSetListener(new ModificationListener(stamp));
+                modificationStamps.put(domain, stamp);
+            }
+            return stamp;
+        }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean isEnabled() {
-        if (getContext() == null) {
+        Object context = getContext();
+        if (context == null) {
             return false;
         }
-        if (((Class<EObject>) parentClass.getInstanceClass()).isInstance(getContext())) {
-            if (containmentFeature.getUpperBound() == EStructuralFeature.UNBOUNDED_MULTIPLICITY) {
-                return true;
-            }
-            ISelection sel = Workbenches.getActivePart().getSite().getSelectionProvider().getSelection();
-            List<EObject> modelObjects = EditPartEmfSelections.getModelObjects(sel, EObject.class, true);
-            if (modelObjects.size() == 1) {
-                EObject selObj = modelObjects.get(0);
-                return (selObj.eGet(containmentFeature) == null);
-            }
+        if (!parentClass.isInstance(context)) {
+            return false;
+        }
+        if (containmentFeature.getUpperBound() == EStructuralFeature.UNBOUNDED_MULTIPLICITY) {
+            return true;
+        }
+        ISelection sel = Workbenches.getActivePart().getSite().getSelectionProvider().getSelection();
+        long stamp = modificationStamp.get();
+        if ((context != cachedContext) || !Objects.equal(sel, cachedSelection) || (stamp != cachedStamp)) {
+            cachedEnabled = computeEnabled(sel);
+            cachedContext = context;
+            cachedSelection = sel;
+            cachedStamp = stamp;
+        }
+        return cachedEnabled;
+    }
+
+    private boolean computeEnabled(ISelection sel) {
+        List<EObject> modelObjects = EditPartEmfSelections.getModelObjects(sel, EObject.class, true);
+        if (modelObjects.size() == 1) {
+            EObject selObj = modelObjects.get(0);
+            return (selObj.eGet(containmentFeature) == null);
         }
         return false;
     }
 
     @Override
     public void run() {
-        final EObject newObject = EcoreUtil.create(childClass);
+        run(1);
+    }
+
+    /**
+     * Adds several newly created children at once, using a single command and a single selection update.
+     * 
+     * @param count
+     *            the number of children to create; it must be {@code 1} if the containment feature is single-valued.
+     */
+    public void run(int count) {
+        Preconditions.checkArgument(count > 0, "Invalid child count: %s", count);
+        Preconditions.checkArgument(containmentFeature.isMany() || (count == 1), "Feature %s is single-valued",
+                containmentFeature.getName());
+        final List<EObject> newObjects = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            newObjects.add(EcoreUtil.create(childClass));
+        }
         Command cmd = null;
         if (containmentFeature.isMany()) {
-            cmd = AddCommand.create(domain, getContext(), containmentFeature, newObject);
+            cmd = AddCommand.create(domain, getContext(), containmentFeature, newObjects);
         } else {
-            cmd = SetCommand.create(domain, getContext(), containmentFeature, newObject);
+            cmd = SetCommand.create(domain, getContext(), containmentFeature, newObjects.get(0));
         }
         domain.getCommandStack().execute(cmd);
         Displays.getDisplay().asyncExec(new Runnable() {
             @Override
             public void run() {
-                Workbenches.getActivePart().getSite().getSelectionProvider().setSelection(new StructuredSelection(newObject));
+                Workbenches.getActivePart().getSite().getSelectionProvider().setSelection(new StructuredSelection(newObjects));
             }
         });
     }
 
+    private static final class ModificationListener extends ResourceSetListenerImpl {
+
+        private final AtomicLong stamp;
+
+        ModificationListener(AtomicLong stamp) {
+            this.stamp = stamp;
+        }
+
+        @Override
+        public boolean isPostcommitOnly() {
+            return true;
+        }
+
+        @Override
+        public void resourceSetChanged(ResourceSetChangeEvent event) {
+            stamp.incrementAndGet();
+        }
+
+    }
+
 }
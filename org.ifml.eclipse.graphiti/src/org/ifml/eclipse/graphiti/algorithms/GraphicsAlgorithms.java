@@ -3,6 +3,7 @@ package org.ifml.eclipse.graphiti.algorithms;
 import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
+import org.ifml.eclipse.graphiti.geometry.Bounds;
 
 /**
  * Provides utility methods for {@link GraphicsAlgorithm}.
@@ -20,7 +21,24 @@ public final class GraphicsAlgorithms {
      * @return the rectangle bounds.
      */
     public static Rectangle getBounds(GraphicsAlgorithm ga) {
-        return new Rectangle(ga.getX(), ga.getY(), ga.getWidth(), ga.getHeight());
+        return getBounds(ga, new Rectangle(0, 0, 0, 0));
+    }
+
+    /**
+     * Copies the bounds of the input {@link GraphicsAlgorithm} into a SWT rectangle.
+     * 
+     * @param ga
+     *            the graphics algorithm.
+     * @param rect
+     *            the target rectangle.
+     * @return {@code rect}.
+     */
+    public static Rectangle getBounds(GraphicsAlgorithm ga, Rectangle rect) {
+        rect.x = ga.getX();
+        rect.y = ga.getY();
+        rect.width = ga.getWidth();
+        rect.height = ga.getHeight();
+        return rect;
     }
 
     /**
@@ -31,7 +49,68 @@ public final class GraphicsAlgorithms {
      * @return the center point.
      */
     public static Point getCenter(GraphicsAlgorithm ga) {
-        return new Point(ga.getX() + (ga.getWidth() / 2), ga.getY() + (ga.getHeight() / 2));
+        return getCenter(ga, new Point(0, 0));
+    }
+
+    /**
+     * Copies the center of the input {@link GraphicsAlgorithm} into a SWT point.
+     * 
+     * @param ga
+     *            the graphics algorithm.
+     * @param point
+     *            the target point.
+     * @return {@code point}.
+     */
+    public static Point getCenter(GraphicsAlgorithm ga, Point point) {
+        point.x = ga.getX() + (ga.getWidth() / 2);
+        point.y = ga.getY() + (ga.getHeight() / 2);
+        return point;
+    }
+
+    /**
+     * Extends a bounding box with the bounds of a list of {@link GraphicsAlgorithm}s.
+     * 
+     * @param gas
+     *            the graphics algorithms.
+     * @param bounds
+     *            the bounds to extend.
+     * @return {@code bounds}.
+     */
+    public static Bounds union(Iterable<? extends GraphicsAlgorithm> gas, Bounds bounds) {
+        for (GraphicsAlgorithm ga : gas) {
+            bounds.add(ga);
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the maximum width among a list of {@link GraphicsAlgorithm}s.
+     * 
+     * @param gas
+     *            the graphics algorithms.
+     * @return the maximum width.
+     */
+    public static int maxWidth(Iterable<? extends GraphicsAlgorithm> gas) {
+        int max = 0;
+        for (GraphicsAlgorithm ga : gas) {
+            max = Math.max(max, ga.getWidth());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the sum of all heights of a list of {@link GraphicsAlgorithm}s.
+     * 
+     * @param gas
+     *            the graphics algorithms.
+     * @return the sum of heights.
+     */
+    public static int sumHeight(Iterable<? extends GraphicsAlgorithm> gas) {
+        int sum = 0;
+        for (GraphicsAlgorithm ga : gas) {
+            sum += ga.getHeight();
+        }
+        return sum;
     }
 
 }
@@ -1,5 +1,7 @@
 package org.ifml.eclipse.graphiti.diagrams;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -8,6 +10,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.emf.common.command.Command;
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.transaction.ResourceSetChangeEvent;
 import org.eclipse.emf.transaction.ResourceSetListener;
 import org.eclipse.emf.transaction.ResourceSetListenerImpl;
@@ -15,33 +18,42 @@ import org.eclipse.emf.transaction.RollbackException;
 import org.eclipse.gef.ContextMenuProvider;
 import org.eclipse.gef.EditPart;
 import org.eclipse.gef.EditPartFactory;
+import org.eclipse.gef.GraphicalViewer;
+import org.eclipse.gef.RootEditPart;
 import org.eclipse.gef.editparts.AbstractTreeEditPart;
 import org.eclipse.gef.editparts.RootTreeEditPart;
 import org.eclipse.gef.ui.parts.ContentOutlinePage;
-import org.eclipse.gef.ui.parts.SelectionSynchronizer;
 import org.eclipse.gef.ui.parts.TreeViewer;
 import org.eclipse.graphiti.dt.IDiagramTypeProvider;
 import org.eclipse.graphiti.ui.editor.DiagramEditor;
 import org.eclipse.jface.viewers.ILabelProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.ISelectionProvider;
+import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
-import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeItem;
 import org.eclipse.ui.part.PageBook;
 import org.ifml.base.Objects2;
 import org.ifml.eclipse.core.runtime.Adaptables;
 import org.ifml.eclipse.emf.ui.editparts.EditPartEmfSelections;
+import org.ifml.eclipse.graphiti.metrics.Histogram;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
 import org.ifml.eclipse.ui.viewers.Selections;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
  * An abstract content outline page for a Graphiti-based editor with an EMF-based model.
+ * <p>
+ * The selection of the outline is synchronized with the selection of the diagram editor by mapping the pictogram elements of the
+ * editor to their business objects and vice versa.
  */
 public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage {
 
@@ -53,6 +65,10 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
 
     private ResourceSetListener modelChangeListener;
 
+    private OutlineRefreshScheduler refreshScheduler;
+
+    private OutlineSelectionSynchronizer selectionSynchronizer;
+
     /**
      * Constructs a new content outline page.
      * 
@@ -78,6 +94,11 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
         pageBook = new PageBook(parent, SWT.NONE);
         getViewer().setRootEditPart(new DiagramRootTreeEditPart());
         outline = getViewer().createControl(pageBook);
+        if (isLazy()) {
+            Listener lazyTreeListener = new LazyTreeListener();
+            outline.addListener(SWT.Expand, lazyTreeListener);
+            outline.addListener(SWT.Collapse, lazyTreeListener);
+        }
         getViewer().setContextMenu(createContextMenuProvider());
         pageBook.showPage(outline);
         configureOutlineViewer();
@@ -85,6 +106,30 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
         initializeOutlineViewer();
     }
 
+    /**
+     * Returns whether the outline tree is lazy.
+     * <p>
+     * A lazy tree creates the child nodes of a model element only when the element is expanded and disposes the nodes of
+     * collapsed subtrees after the delay returned by {@link #getCollapsedSubtreeDisposalDelay()}. The default implementation
+     * returns {@code false}. Sub-classes can override it for very large models.
+     * 
+     * @return {@code true} if the outline tree is lazy.
+     */
+    protected boolean isLazy() {
+        return false;
+    }
+
+    /**
+     * Returns the time a subtree must remain collapsed before its nodes are disposed, when the outline tree is lazy.
+     * <p>
+     * The default implementation returns 30 seconds. Sub-classes can override it; a negative value keeps collapsed subtrees.
+     * 
+     * @return the disposal delay, in milliseconds.
+     */
+    protected int getCollapsedSubtreeDisposalDelay() {
+        return 30000;
+    }
+
     /**
      * Creates the context menu provider.
      * 
@@ -98,8 +143,10 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
     }
 
     private void hookOutlineViewer() {
-        // TODO: fix synchronizer: models of editor's edit parts are shapes, not EObjects
-        Adaptables.getAdapter(getDiagramEditor(), SelectionSynchronizer.class).addViewer(getViewer());
+        GraphicalViewer diagramViewer = Adaptables.getAdapter(getDiagramEditor(), GraphicalViewer.class);
+        selectionSynchronizer = new OutlineSelectionSynchronizer(this, getViewer(), diagramViewer, dtp.getDiagram());
+        selectionSynchronizer.hook();
+        refreshScheduler = new OutlineRefreshScheduler(getViewer(), outline.getDisplay());
         modelChangeListener = new ModelChangeListener();
         getDiagramEditor().getEditingDomain().addResourceSetListener(modelChangeListener);
     }
@@ -124,6 +171,15 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
      */
     protected abstract EObject getRootlElement(IDiagramTypeProvider dtp) throws CoreException;
 
+    /**
+     * Returns the scheduler coalescing the refreshes of the outline tree.
+     * 
+     * @return the refresh scheduler, or {@code null} if the control has not been created yet.
+     */
+    protected final OutlineRefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
     @Override
     public final Control getControl() {
         return pageBook;
@@ -137,7 +193,10 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
 
     private final void unhookOutlineViewer() {
         getDiagramEditor().getEditingDomain().removeResourceSetListener(modelChangeListener);
-        Adaptables.getAdapter(getDiagramEditor(), SelectionSynchronizer.class).removeViewer(getViewer());
+        if (selectionSynchronizer != null) {
+            selectionSynchronizer.unhook();
+            selectionSynchronizer = null;
+        }
     }
 
     /**
@@ -145,7 +204,48 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
      */
     @Override
     public void setSelection(ISelection selection) {
-        super.setSelection(EditPartEmfSelections.toEditParts(Selections.toStructuredSelection(selection).toList(), getViewer()));
+        List<?> objects = Selections.toStructuredSelection(selection).toList();
+        if (selectionSynchronizer != null) {
+            super.setSelection(new StructuredSelection(selectionSynchronizer.toOutlineEditParts(objects)));
+            return;
+        }
+        List<EObject> eObjs = Lists.newArrayList();
+        for (Object obj : objects) {
+            EObject eObj = Objects2.as(obj, EObject.class);
+            if (eObj != null) {
+                eObjs.add(eObj);
+            }
+        }
+        revealInOutline(eObjs);
+        super.setSelection(EditPartEmfSelections.toEditParts(objects, getViewer()));
+    }
+
+    /**
+     * Creates the outline nodes leading to some model elements, if the outline tree is lazy.
+     * 
+     * @param eObjs
+     *            the model elements.
+     */
+    void revealInOutline(Collection<EObject> eObjs) {
+        if (isLazy()) {
+            for (EObject eObj : eObjs) {
+                materializePath(eObj);
+            }
+        }
+    }
+
+    private void materializePath(EObject eObj) {
+        List<EObject> ancestors = Lists.newArrayList();
+        for (EObject ancestor = eObj.eContainer(); ancestor != null; ancestor = ancestor.eContainer()) {
+            ancestors.add(ancestor);
+        }
+        Map<?, ?> editPartRegistry = getViewer().getEditPartRegistry();
+        for (EObject ancestor : Lists.reverse(ancestors)) {
+            TreeEditPart editPart = Objects2.as(editPartRegistry.get(ancestor), TreeEditPart.class);
+            if (editPart != null) {
+                editPart.materialize();
+            }
+        }
     }
 
     /**
@@ -172,6 +272,22 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
         }
     }
 
+    private final class LazyTreeListener implements Listener {
+
+        @Override
+        public void handleEvent(Event event) {
+            TreeEditPart editPart = Objects2.as(event.item.getData(), TreeEditPart.class);
+            if (editPart == null) {
+                return;
+            }
+            if (event.type == SWT.Expand) {
+                editPart.materialize();
+            } else if (event.type == SWT.Collapse) {
+                editPart.scheduleDisposal();
+            }
+        }
+    }
+
     private final class OutlineEditPartFactory implements EditPartFactory {
 
         @Override
@@ -180,12 +296,70 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
         }
     }
 
-    private final class TreeEditPart extends AbstractTreeEditPart {
+    private final class TreeEditPart extends AbstractTreeEditPart implements OutlineRefreshScheduler.IncrementalEditPart {
+
+        private boolean materialized;
+
+        private int collapseCount;
 
         TreeEditPart(Object model) {
             super(model);
         }
 
+        private boolean isMaterialized() {
+            return !isLazy() || materialized || (getParent() instanceof RootEditPart);
+        }
+
+        void materialize() {
+            collapseCount++;
+            if (!isMaterialized()) {
+                materialized = true;
+                refreshChildren();
+            }
+        }
+
+        void scheduleDisposal() {
+            final int expectedCollapseCount = ++collapseCount;
+            int delay = getCollapsedSubtreeDisposalDelay();
+            if (delay < 0) {
+                return;
+            }
+            getViewer().getControl().getDisplay().timerExec(delay, new Runnable() {
+                @Override
+                public void run() {
+                    TreeItem item = Objects2.as(getWidget(), TreeItem.class);
+                    if ((item != null) && !item.isDisposed() && !item.getExpanded() && (collapseCount == expectedCollapseCount)
+                            && isActive()) {
+                        materialized = false;
+                        refreshChildren();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void refreshLabel() {
+            setWidgetText(getText());
+            setWidgetImage(getImage());
+        }
+
+        @Override
+        public void refreshChildren() {
+            TreeItem item = Objects2.as(getWidget(), TreeItem.class);
+            if (isLazy() && (item != null)) {
+                for (TreeItem childItem : item.getItems()) {
+                    if (childItem.getData() == null) {
+                        childItem.dispose();
+                    }
+                }
+            }
+            super.refreshChildren();
+            EObject model = Objects2.as(getModel(), EObject.class);
+            if (!isMaterialized() && (item != null) && (model != null) && !model.eContents().isEmpty()) {
+                new TreeItem(item, SWT.NONE); // placeholder showing the expand button
+            }
+        }
+
         @Override
         protected String getText() {
             return getLabelProvider().getText(getModel());
@@ -200,6 +374,9 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
         public List<?> getModelChildren() {
             EObject model = Objects2.as(getModel(), EObject.class);
             if (model != null) {
+                if (!isMaterialized()) {
+                    return Collections.emptyList();
+                }
                 return model.eContents();
             }
             return super.getChildren();
@@ -209,6 +386,8 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
 
     private final class ModelChangeListener extends ResourceSetListenerImpl {
 
+        private final Histogram notificationsPerTransaction = Metrics.histogram("outline.transaction.notifications");
+
         @Override
         public boolean isPostcommitOnly() {
             return true;
@@ -216,25 +395,20 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
 
         @Override
         public void resourceSetChanged(ResourceSetChangeEvent event) {
-            final Set<EObject> changedModels = Sets.newHashSet();
+            notificationsPerTransaction.record(event.getNotifications().size());
+            Set<EObject> changedModels = Sets.newHashSet();
+            Set<EObject> changedContainers = Sets.newHashSet();
             for (Notification notification : event.getNotifications()) {
                 EObject changedModel = Objects2.as(notification.getNotifier(), EObject.class);
                 if (changedModel != null) {
                     changedModels.add(changedModel);
-                }
-            }
-            Display.getDefault().asyncExec(new Runnable() {
-                @Override
-                public void run() {
-                    Map<?, ?> editPartRegistry = getViewer().getEditPartRegistry();
-                    for (EObject changedModel : changedModels) {
-                        EditPart editPart = Objects2.as(editPartRegistry.get(changedModel), EditPart.class);
-                        if (editPart != null) {
-                            editPart.refresh();
-                        }
+                    EReference reference = Objects2.as(notification.getFeature(), EReference.class);
+                    if ((reference != null) && reference.isContainment()) {
+                        changedContainers.add(changedModel);
                     }
                 }
-            });
+            }
+            refreshScheduler.transactionCommitted(changedModels, changedContainers);
         }
 
         @Override
@@ -244,4 +418,4 @@ public abstract class AbstractGfEmfContentOutlinePage extends ContentOutlinePage
 
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
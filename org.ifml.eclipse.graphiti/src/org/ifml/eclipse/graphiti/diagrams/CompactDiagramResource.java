@@ -0,0 +1,187 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * A diagram resource able to store its contents either as XMI or in the compact EMF binary format, optionally compressed.
+ * <p>
+ * The format of the stored contents is detected automatically on load, so that existing XMI files are read transparently and
+ * converted to the save format the next time the resource is saved.
+ * <p>
+ * The binary formats keep the XMI identifiers of the objects, which are written after the contents together with the position of
+ * each identified object in the content tree, so that references from other files using identifiers are still resolved.
+ */
+public final class CompactDiagramResource extends XMIResourceImpl {
+
+    private static final String ZIP_ENTRY_NAME = "ResourceContents";
+
+    private static final byte[] ZIP_SIGNATURE = { 'P', 'K', 3, 4 };
+
+    private static final byte[] BINARY_SIGNATURE = { (byte) 0x89, 'e', 'm', 'f' };
+
+    private DiagramFileFormat saveFormat;
+
+    private DiagramFileFormat loadedFormat;
+
+    /**
+     * Constructs a new resource.
+     * 
+     * @param uri
+     *            the resource URI.
+     * @param saveFormat
+     *            the format used on save.
+     */
+    public CompactDiagramResource(URI uri, DiagramFileFormat saveFormat) {
+        super(uri);
+        this.saveFormat = Preconditions.checkNotNull(saveFormat);
+    }
+
+    /**
+     * Returns the format used on save.
+     * 
+     * @return the save format.
+     */
+    public DiagramFileFormat getSaveFormat() {
+        return saveFormat;
+    }
+
+    /**
+     * Sets the format used on save.
+     * 
+     * @param saveFormat
+     *            the save format.
+     */
+    public void setSaveFormat(DiagramFileFormat saveFormat) {
+        this.saveFormat = Preconditions.checkNotNull(saveFormat);
+    }
+
+    /**
+     * Returns the format detected during the last load.
+     * 
+     * @return the loaded format or {@code null} if the resource has not been loaded.
+     */
+    public DiagramFileFormat getLoadedFormat() {
+        return loadedFormat;
+    }
+
+    @Override
+    protected void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+        InputStream in = new BufferedInputStream(inputStream);
+        boolean compressed = false;
+        if (startsWith(in, ZIP_SIGNATURE)) {
+            ZipInputStream zipIn = new ZipInputStream(in);
+            if (zipIn.getNextEntry() == null) {
+                throw new IOException("Missing resource contents in " + getURI());
+            }
+            in = new BufferedInputStream(zipIn);
+            compressed = true;
+        }
+        if (startsWith(in, BINARY_SIGNATURE)) {
+            BinaryResourceImpl.EObjectInputStream binaryIn = new BinaryResourceImpl.EObjectInputStream(in, options);
+            binaryIn.loadResource(this);
+            loadIds(binaryIn);
+            loadedFormat = compressed ? DiagramFileFormat.COMPRESSED_BINARY : DiagramFileFormat.BINARY;
+        } else {
+            super.doLoad(in, options);
+            loadedFormat = DiagramFileFormat.XMI;
+        }
+    }
+
+    @Override
+    protected void doSave(OutputStream outputStream, Map<?, ?> options) throws IOException {
+        switch (saveFormat) {
+        case BINARY:
+            saveBinary(outputStream, options);
+            break;
+        case COMPRESSED_BINARY:
+            ZipOutputStream zipOut = new ZipOutputStream(outputStream);
+            zipOut.putNextEntry(new ZipEntry(ZIP_ENTRY_NAME));
+            saveBinary(zipOut, options);
+            zipOut.closeEntry();
+            zipOut.finish();
+            break;
+        default:
+            super.doSave(outputStream, options);
+            break;
+        }
+    }
+
+    private void saveBinary(OutputStream outputStream, Map<?, ?> options) throws IOException {
+        BinaryResourceImpl.EObjectOutputStream out = new BinaryResourceImpl.EObjectOutputStream(outputStream, options);
+        out.saveResource(this);
+        saveIds(out);
+        out.flush();
+    }
+
+    private void saveIds(BinaryResourceImpl.EObjectOutputStream out) throws IOException {
+        List<Integer> positions = Lists.newArrayList();
+        List<String> ids = Lists.newArrayList();
+        int position = 0;
+        for (TreeIterator<EObject> i = getAllContents(); i.hasNext(); position++) {
+            String id = getID(i.next());
+            if (id != null) {
+                positions.add(position);
+                ids.add(id);
+            }
+        }
+        out.writeCompressedInt(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            out.writeCompressedInt(positions.get(i));
+            out.writeString(ids.get(i));
+        }
+    }
+
+    private void loadIds(BinaryResourceImpl.EObjectInputStream in) throws IOException {
+        int count = in.readCompressedInt();
+        if (count == 0) {
+            return;
+        }
+        int position = 0;
+        int nextPosition = in.readCompressedInt();
+        String nextId = in.readString();
+        for (TreeIterator<EObject> i = getAllContents(); i.hasNext(); position++) {
+            EObject eObject = i.next();
+            if (position == nextPosition) {
+                setID(eObject, nextId);
+                if (--count == 0) {
+                    return;
+                }
+                nextPosition = in.readCompressedInt();
+                nextId = in.readString();
+            }
+        }
+        throw new IOException("Invalid object identifiers in " + getURI());
+    }
+
+    private static boolean startsWith(InputStream in, byte[] signature) throws IOException {
+        in.mark(signature.length);
+        try {
+            for (byte b : signature) {
+                if (in.read() != (b & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+}
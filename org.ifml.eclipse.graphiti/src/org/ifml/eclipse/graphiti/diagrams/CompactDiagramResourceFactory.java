@@ -0,0 +1,31 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceFactoryImpl;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A resource factory creating {@link CompactDiagramResource}s.
+ */
+public final class CompactDiagramResourceFactory extends ResourceFactoryImpl {
+
+    private final DiagramFileFormat saveFormat;
+
+    /**
+     * Constructs a new factory.
+     * 
+     * @param saveFormat
+     *            the format used on save by the created resources.
+     */
+    public CompactDiagramResourceFactory(DiagramFileFormat saveFormat) {
+        this.saveFormat = Preconditions.checkNotNull(saveFormat);
+    }
+
+    @Override
+    public Resource createResource(URI uri) {
+        return new CompactDiagramResource(uri, saveFormat);
+    }
+
+}
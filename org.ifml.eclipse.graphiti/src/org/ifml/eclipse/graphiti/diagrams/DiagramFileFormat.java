@@ -0,0 +1,17 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+/**
+ * The formats used for storing diagram files.
+ */
+public enum DiagramFileFormat {
+
+    /** The XMI format. */
+    XMI,
+
+    /** The EMF binary format. */
+    BINARY,
+
+    /** The EMF binary format, compressed into a ZIP entry. */
+    COMPRESSED_BINARY
+
+}
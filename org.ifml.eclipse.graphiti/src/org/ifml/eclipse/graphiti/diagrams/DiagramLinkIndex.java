@@ -0,0 +1,250 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.eclipse.graphiti.mm.pictograms.PictogramLink;
+import org.eclipse.graphiti.mm.pictograms.PictogramsPackage;
+import org.eclipse.graphiti.services.Graphiti;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+/**
+ * A reverse index from business objects to the pictogram elements linked to them.
+ * <p>
+ * Graphiti resolves a business object to its pictogram elements by scanning all the links of a diagram. This index is built once
+ * per diagram and is kept up to date incrementally by the notifications of the diagram links: the index itself is attached to the
+ * diagram and listens to the addition and removal of links, while a second adapter is attached to each link and listens to its
+ * business objects and pictogram element. Since notifications are delivered as soon as the model changes, lookups made inside a
+ * running transaction, e.g. while generating many elements, see the elements created earlier in the same transaction; undo,
+ * redo and rollbacks are notified in the same way.
+ */
+public final class DiagramLinkIndex extends AdapterImpl {
+
+    private final Diagram diagram;
+
+    private final ListMultimap<EObject, PictogramElement> pictogramElements = ArrayListMultimap.create();
+
+    private final Map<PictogramLink, IndexedLink> indexedLinks = Maps.newHashMap();
+
+    private final Adapter linkAdapter = new LinkAdapter();
+
+    private boolean built;
+
+    private DiagramLinkIndex(Diagram diagram) {
+        this.diagram = diagram;
+    }
+
+    /**
+     * Returns the index associated with a diagram, installing it if needed.
+     * 
+     * @param diagram
+     *            the diagram.
+     * @return the link index.
+     */
+    public static DiagramLinkIndex get(Diagram diagram) {
+        DiagramLinkIndex index = (DiagramLinkIndex) EcoreUtil.getExistingAdapter(diagram, DiagramLinkIndex.class);
+        if (index == null) {
+            index = new DiagramLinkIndex(diagram);
+            diagram.eAdapters().add(index);
+        }
+        return index;
+    }
+
+    @Override
+    public boolean isAdapterForType(Object type) {
+        return type == DiagramLinkIndex.class;
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        if (msg.getEventType() == Notification.REMOVING_ADAPTER) {
+            if (msg.getOldValue() == this) {
+                clear();
+            }
+        } else if (msg.getFeature() == PictogramsPackage.Literals.DIAGRAM__PICTOGRAM_LINKS) {
+            linksChanged(msg);
+        }
+    }
+
+    /**
+     * Returns the first pictogram element linked to a business object.
+     * 
+     * @param businessObject
+     *            the business object.
+     * @return the pictogram element or {@code null} if the business object is not linked.
+     */
+    public synchronized PictogramElement getPictogramElement(EObject businessObject) {
+        build();
+        for (PictogramElement pe : pictogramElements.get(businessObject)) {
+            if (isLinked(pe, businessObject)) {
+                return pe;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all the pictogram elements linked to a business object.
+     * 
+     * @param businessObject
+     *            the business object.
+     * @return the list of pictogram elements.
+     */
+    public synchronized List<PictogramElement> getPictogramElements(EObject businessObject) {
+        build();
+        ImmutableList.Builder<PictogramElement> builder = ImmutableList.builder();
+        for (PictogramElement pe : pictogramElements.get(businessObject)) {
+            if (isLinked(pe, businessObject)) {
+                builder.add(pe);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the main business object linked to a pictogram element.
+     * <p>
+     * The link is read directly from the pictogram element.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @return the business object or {@code null} if the element is not linked.
+     */
+    public Object getBusinessObject(PictogramElement pictogramElement) {
+        if (pictogramElement == null) {
+            return null;
+        }
+        return Graphiti.getLinkService().getBusinessObjectForLinkedPictogramElement(pictogramElement);
+    }
+
+    /**
+     * Removes the index from the diagram and its adapters from the diagram links.
+     */
+    public void dispose() {
+        diagram.eAdapters().remove(this);
+    }
+
+    private synchronized void clear() {
+        for (PictogramLink link : indexedLinks.keySet()) {
+            link.eAdapters().remove(linkAdapter);
+        }
+        pictogramElements.clear();
+        indexedLinks.clear();
+        built = false;
+    }
+
+    private void build() {
+        if (!built) {
+            for (PictogramLink link : diagram.getPictogramLinks()) {
+                link.eAdapters().add(linkAdapter);
+                index(link);
+            }
+            built = true;
+        }
+    }
+
+    private boolean isLinked(PictogramElement pe, EObject businessObject) {
+        PictogramLink link = pe.getLink();
+        return (link != null) && (link.eContainer() == diagram) && link.getBusinessObjects().contains(businessObject);
+    }
+
+    private synchronized void linksChanged(Notification msg) {
+        if (!built) {
+            return;
+        }
+        for (PictogramLink link : getLinks(msg.getOldValue())) {
+            if (link.eContainer() != diagram) {
+                link.eAdapters().remove(linkAdapter);
+                unindex(link);
+            }
+        }
+        for (PictogramLink link : getLinks(msg.getNewValue())) {
+            if ((link.eContainer() == diagram) && !indexedLinks.containsKey(link)) {
+                link.eAdapters().add(linkAdapter);
+                index(link);
+            }
+        }
+    }
+
+    private synchronized void linkChanged(PictogramLink link) {
+        if (built && indexedLinks.containsKey(link)) {
+            unindex(link);
+            index(link);
+        }
+    }
+
+    private void index(PictogramLink link) {
+        PictogramElement pe = link.getPictogramElement();
+        List<EObject> businessObjects = ImmutableList.of();
+        if (pe != null) {
+            businessObjects = ImmutableList.copyOf(link.getBusinessObjects());
+        }
+        for (EObject businessObject : businessObjects) {
+            pictogramElements.put(businessObject, pe);
+        }
+        indexedLinks.put(link, new IndexedLink(pe, businessObjects));
+    }
+
+    private void unindex(PictogramLink link) {
+        IndexedLink indexedLink = indexedLinks.remove(link);
+        if (indexedLink != null) {
+            for (EObject businessObject : indexedLink.businessObjects) {
+                pictogramElements.remove(businessObject, indexedLink.pictogramElement);
+            }
+        }
+    }
+
+    private static List<PictogramLink> getLinks(Object value) {
+        if (value instanceof PictogramLink) {
+            return ImmutableList.of((PictogramLink) value);
+        } else if (value instanceof Collection<?>) {
+            ImmutableList.Builder<PictogramLink> builder = ImmutableList.builder();
+            for (Object item : (Collection<?>) value) {
+                if (item instanceof PictogramLink) {
+                    builder.add((PictogramLink) item);
+                }
+            }
+            return builder.build();
+        }
+        return ImmutableList.of();
+    }
+
+    private static final class IndexedLink {
+
+        private final PictogramElement pictogramElement;
+
+        private final List<EObject> businessObjects;
+
+        IndexedLink(PictogramElement pictogramElement, List<EObject> businessObjects) {
+            this.pictogramElement = pictogramElement;
+            this.businessObjects = businessObjects;
+        }
+
+    }
+
+    private final class LinkAdapter extends AdapterImpl {
+
+        @Override
+        public void notifyChanged(Notification msg) {
+            Object feature = msg.getFeature();
+            if ((feature == PictogramsPackage.Literals.PICTOGRAM_LINK__BUSINESS_OBJECTS)
+                    || (feature == PictogramsPackage.Literals.PICTOGRAM_LINK__PICTOGRAM_ELEMENT)) {
+                linkChanged((PictogramLink) msg.getNotifier());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,339 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.graphiti.mm.algorithms.AlgorithmsPackage;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramsPackage;
+import org.eclipse.graphiti.mm.pictograms.Shape;
+import org.eclipse.swt.graphics.Point;
+import org.ifml.eclipse.graphiti.geometry.QuadTree;
+import org.ifml.eclipse.graphiti.services.GaServices;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * A spatial index of the absolute bounds of the shapes of a diagram.
+ * <p>
+ * The index is backed by a {@link QuadTree} and answers point, rectangle and nearest-neighbour queries without visiting the whole
+ * shape hierarchy. It observes the shapes of the diagram and their graphics algorithms: changes are recorded as they happen,
+ * including the ones made by a running transaction, and are applied to the tree on the next query.
+ */
+public final class DiagramSpatialIndex extends EContentAdapter {
+
+    private final Diagram diagram;
+
+    private final QuadTree<Shape> tree = new QuadTree<Shape>();
+
+    private final Set<Shape> dirtyShapes = Sets.newLinkedHashSet();
+
+    private final Set<Shape> dirtySubtrees = Sets.newLinkedHashSet();
+
+    private final Set<Shape> removedSubtrees = Sets.newLinkedHashSet();
+
+    private boolean built;
+
+    private DiagramSpatialIndex(Diagram diagram) {
+        this.diagram = diagram;
+    }
+
+    /**
+     * Returns the index associated with a diagram, installing it if needed.
+     * 
+     * @param diagram
+     *            the diagram.
+     * @return the spatial index.
+     */
+    public static DiagramSpatialIndex get(Diagram diagram) {
+        DiagramSpatialIndex index = (DiagramSpatialIndex) EcoreUtil.getExistingAdapter(diagram, DiagramSpatialIndex.class);
+        if (index == null) {
+            index = new DiagramSpatialIndex(diagram);
+            diagram.eAdapters().add(index);
+        }
+        return index;
+    }
+
+    @Override
+    public boolean isAdapterForType(Object type) {
+        return type == DiagramSpatialIndex.class;
+    }
+
+    @Override
+    protected void addAdapter(Notifier notifier) {
+        if ((notifier instanceof Shape)
+                || ((notifier instanceof GraphicsAlgorithm) && (((GraphicsAlgorithm) notifier).eContainer() instanceof Shape))) {
+            super.addAdapter(notifier);
+        }
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        super.notifyChanged(msg);
+        if (msg.isTouch()) {
+            return;
+        }
+        Object feature = msg.getFeature();
+        Object notifier = msg.getNotifier();
+        if (notifier instanceof GraphicsAlgorithm) {
+            Shape shape = getShape((GraphicsAlgorithm) notifier);
+            if (shape == null) {
+                return;
+            }
+            if ((feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__X)
+                    || (feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__Y)) {
+                markDirty(shape, true);
+            } else if ((feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__WIDTH)
+                    || (feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__HEIGHT)) {
+                markDirty(shape, false);
+            }
+        } else if (feature == PictogramsPackage.Literals.PICTOGRAM_ELEMENT__GRAPHICS_ALGORITHM) {
+            markDirty((Shape) notifier, true);
+        } else if (feature == PictogramsPackage.Literals.CONTAINER_SHAPE__CHILDREN) {
+            markRemoved(msg.getOldValue());
+            markAdded(msg.getNewValue());
+        }
+    }
+
+    /**
+     * Returns all the shapes whose absolute bounds contain a point.
+     * 
+     * @param x
+     *            the absolute horizontal coordinate.
+     * @param y
+     *            the absolute vertical coordinate.
+     * @return the list of shapes.
+     */
+    public synchronized List<Shape> getShapes(int x, int y) {
+        update();
+        return tree.query(x, y);
+    }
+
+    /**
+     * Returns all the shapes whose absolute bounds intersect a rectangle.
+     * 
+     * @param x
+     *            the absolute horizontal coordinate of the rectangle.
+     * @param y
+     *            the absolute vertical coordinate of the rectangle.
+     * @param width
+     *            the width of the rectangle.
+     * @param height
+     *            the height of the rectangle.
+     * @return the list of shapes.
+     */
+    public synchronized List<Shape> getShapes(int x, int y, int width, int height) {
+        update();
+        return tree.query(x, y, width, height);
+    }
+
+    /**
+     * Returns the innermost shape whose absolute bounds contain a point.
+     * <p>
+     * Among shapes nested at the same depth, the one drawn last is returned.
+     * 
+     * @param x
+     *            the absolute horizontal coordinate.
+     * @param y
+     *            the absolute vertical coordinate.
+     * @return the shape or {@code null} if no shape contains the point.
+     */
+    public synchronized Shape getShape(int x, int y) {
+        return getInnermost(getShapes(x, y), Shape.class);
+    }
+
+    /**
+     * Returns the innermost container shape whose absolute bounds contain a point.
+     * 
+     * @param x
+     *            the absolute horizontal coordinate.
+     * @param y
+     *            the absolute vertical coordinate.
+     * @return the container shape or the diagram if no container shape contains the point.
+     */
+    public synchronized ContainerShape getContainerShape(int x, int y) {
+        ContainerShape containerShape = getInnermost(getShapes(x, y), ContainerShape.class);
+        return (containerShape != null) ? containerShape : diagram;
+    }
+
+    /**
+     * Returns the shape nearest to a point, measuring the distance between the point and the absolute bounds of each shape.
+     * 
+     * @param x
+     *            the absolute horizontal coordinate.
+     * @param y
+     *            the absolute vertical coordinate.
+     * @return the nearest shape or {@code null} if the diagram has no shapes.
+     */
+    public synchronized Shape getNearestShape(int x, int y) {
+        update();
+        return tree.nearest(x, y);
+    }
+
+    /**
+     * Removes the index from the diagram.
+     */
+    public void dispose() {
+        diagram.eAdapters().remove(this);
+    }
+
+    @Override
+    public void unsetTarget(Notifier oldTarget) {
+        super.unsetTarget(oldTarget);
+        if (oldTarget == diagram) {
+            synchronized (this) {
+                tree.clear();
+                dirtyShapes.clear();
+                dirtySubtrees.clear();
+                removedSubtrees.clear();
+                built = false;
+            }
+        }
+    }
+
+    private static Shape getShape(GraphicsAlgorithm ga) {
+        EObject container = ga.eContainer();
+        return (container instanceof Shape) ? (Shape) container : null;
+    }
+
+    private synchronized void markDirty(Shape shape, boolean subtree) {
+        if (built && (shape != diagram)) {
+            (subtree ? dirtySubtrees : dirtyShapes).add(shape);
+        }
+    }
+
+    private synchronized void markAdded(Object value) {
+        if (built) {
+            for (Shape shape : getShapes(value)) {
+                dirtySubtrees.add(shape);
+            }
+        }
+    }
+
+    private synchronized void markRemoved(Object value) {
+        if (built) {
+            for (Shape shape : getShapes(value)) {
+                removedSubtrees.add(shape);
+            }
+        }
+    }
+
+    private static List<Shape> getShapes(Object value) {
+        List<Shape> shapes = Lists.newArrayList();
+        if (value instanceof Shape) {
+            shapes.add((Shape) value);
+        } else if (value instanceof Collection<?>) {
+            for (Object item : (Collection<?>) value) {
+                if (item instanceof Shape) {
+                    shapes.add((Shape) item);
+                }
+            }
+        }
+        return shapes;
+    }
+
+    private void update() {
+        if (!built) {
+            index(diagram, 0, 0);
+            built = true;
+            return;
+        }
+        for (Shape shape : removedSubtrees) {
+            remove(shape);
+        }
+        removedSubtrees.clear();
+        for (Shape shape : dirtySubtrees) {
+            if (isIndexable(shape)) {
+                Point offset = GaServices.toAbsolute(0, 0, shape.getContainer());
+                index(shape, offset.x, offset.y);
+            }
+        }
+        dirtySubtrees.clear();
+        for (Shape shape : dirtyShapes) {
+            if (isIndexable(shape)) {
+                Point offset = GaServices.toAbsolute(0, 0, shape.getContainer());
+                put(shape, offset.x, offset.y);
+            }
+        }
+        dirtyShapes.clear();
+    }
+
+    private boolean isIndexable(Shape shape) {
+        return (shape.getGraphicsAlgorithm() != null) && EcoreUtil.isAncestor(diagram, shape);
+    }
+
+    private void index(Shape shape, int offsetX, int offsetY) {
+        if (shape != diagram) {
+            GraphicsAlgorithm ga = put(shape, offsetX, offsetY);
+            if (ga == null) {
+                return;
+            }
+            offsetX += ga.getX();
+            offsetY += ga.getY();
+        }
+        if (shape instanceof ContainerShape) {
+            for (Shape child : ((ContainerShape) shape).getChildren()) {
+                index(child, offsetX, offsetY);
+            }
+        }
+    }
+
+    private GraphicsAlgorithm put(Shape shape, int offsetX, int offsetY) {
+        GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+        if (ga == null) {
+            tree.remove(shape);
+        } else {
+            tree.put(shape, offsetX + ga.getX(), offsetY + ga.getY(), Math.max(0, ga.getWidth()), Math.max(0, ga.getHeight()));
+        }
+        return ga;
+    }
+
+    private void remove(Shape shape) {
+        if (EcoreUtil.isAncestor(diagram, shape)) {
+            return;
+        }
+        tree.remove(shape);
+        if (shape instanceof ContainerShape) {
+            for (Shape child : ((ContainerShape) shape).getChildren()) {
+                remove(child);
+            }
+        }
+    }
+
+    private static <T extends Shape> T getInnermost(List<Shape> shapes, Class<T> type) {
+        T innermost = null;
+        int innermostDepth = -1;
+        for (Shape shape : shapes) {
+            if (type.isInstance(shape)) {
+                int depth = 0;
+                for (ContainerShape container = shape.getContainer(); container != null; container = container.getContainer()) {
+                    depth++;
+                }
+                if ((depth > innermostDepth) || ((depth == innermostDepth) && isDrawnAfter(shape, innermost))) {
+                    innermost = type.cast(shape);
+                    innermostDepth = depth;
+                }
+            }
+        }
+        return innermost;
+    }
+
+    private static boolean isDrawnAfter(Shape shape, Shape other) {
+        ContainerShape container = shape.getContainer();
+        if ((container == null) || (container != other.getContainer())) {
+            return false;
+        }
+        List<Shape> children = container.getChildren();
+        return children.indexOf(shape) > children.indexOf(other);
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.xmi.XMIResource;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Writes diagrams one at a time into a multi-root XMI file.
+ * <p>
+ * Each diagram is serialized on its own through a {@link RootIndexedXmiResource}, so that only the diagram being written needs to
+ * be held in memory. Diagrams must only reference their own elements or objects stored in other resources.
+ * <p>
+ * The file ends with an index, stored in XML comments, holding the byte range and the name of each diagram; the index is read by
+ * {@link LazyDiagramFile} to load diagrams on demand.
+ */
+final class DiagramStreamWriter {
+
+    static final String ENCODING = "UTF-8";
+
+    static final Map<?, ?> SAVE_OPTIONS = ImmutableMap.of(XMLResource.OPTION_DECLARE_XML, Boolean.FALSE,
+            XMLResource.OPTION_ENCODING, ENCODING);
+
+    static final String INDEX_START = "<!--diagram-index";
+
+    static final String INDEX_END = "-->";
+
+    static final String FOOTER_PREFIX = "<!--diagram-index-offset:";
+
+    static final String FOOTER_SUFFIX = "-->\n";
+
+    static final int FOOTER_OFFSET_DIGITS = 16;
+
+    static final int FOOTER_LENGTH = FOOTER_PREFIX.length() + FOOTER_OFFSET_DIGITS + FOOTER_SUFFIX.length();
+
+    private final CountingOutputStream out;
+
+    private final Writer writer;
+
+    private final RootIndexedXmiResource resource;
+
+    private final StringBuilder index = new StringBuilder();
+
+    private int count;
+
+    DiagramStreamWriter(OutputStream out, URI uri) throws IOException {
+        this.out = new CountingOutputStream(out);
+        this.writer = new OutputStreamWriter(this.out, ENCODING);
+        this.resource = new RootIndexedXmiResource(uri);
+        writer.write("<?xml version=\"1.0\" encoding=\"" + ENCODING + "\"?>\n");
+        writer.write("<" + XMIResource.XMI_NS + ":" + XMIResource.XMI_TAG_NAME + " " + XMIResource.XMI_NS + ":"
+                + XMIResource.VERSION_NAME + "=\"" + XMIResource.VERSION_VALUE + "\" xmlns:" + XMIResource.XMI_NS + "=\""
+                + XMIResource.XMI_URI + "\">\n");
+        writer.flush();
+    }
+
+    /**
+     * Appends a diagram to the file and detaches it from the writer.
+     * 
+     * @param diagram
+     *            the diagram.
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    void write(Diagram diagram) throws IOException {
+        long start = out.getCount();
+        resource.setRootIndex(count);
+        resource.getContents().add(diagram);
+        try {
+            resource.save(out, SAVE_OPTIONS);
+        } finally {
+            resource.getContents().clear();
+        }
+        endDiagram(start, diagram.getName());
+    }
+
+    /**
+     * Appends a diagram already serialized with the root index matching its position in the file.
+     * 
+     * @param bytes
+     *            the serialized diagram.
+     * @param name
+     *            the diagram name.
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    void writeSerialized(byte[] bytes, String name) throws IOException {
+        long start = out.getCount();
+        out.write(bytes);
+        endDiagram(start, name);
+    }
+
+    private void endDiagram(long start, String name) throws IOException {
+        index.append(start).append(' ').append(out.getCount()).append(' ').append(encodeName(name)).append('\n');
+        writer.write("\n");
+        writer.flush();
+        count++;
+    }
+
+    static String encodeName(String name) throws IOException {
+        return (name == null) ? "" : URLEncoder.encode(name, ENCODING).replace("-", "%2D");
+    }
+
+    static String decodeName(String encodedName) throws IOException {
+        return URLDecoder.decode(encodedName, ENCODING);
+    }
+
+    /**
+     * Returns the number of diagrams written so far.
+     * 
+     * @return the number of diagrams.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Terminates the file and closes the underlying stream.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    void close() throws IOException {
+        try {
+            writer.write("</" + XMIResource.XMI_NS + ":" + XMIResource.XMI_TAG_NAME + ">\n");
+            writer.flush();
+            long indexOffset = out.getCount();
+            writer.write(INDEX_START + "\n" + index + INDEX_END + "\n");
+            String offset = Long.toString(indexOffset);
+            writer.write(FOOTER_PREFIX + Strings.padStart(offset, FOOTER_OFFSET_DIGITS, '0') + FOOTER_SUFFIX);
+            writer.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Closes the underlying stream without terminating the file, which is left incomplete and has no index. Invoking this method
+     * after {@link #close()} has no effect.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    void abort() throws IOException {
+        out.close();
+    }
+
+}
@@ -1,36 +1,98 @@
 package org.ifml.eclipse.graphiti.diagrams;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.emf.common.command.CommandStack;
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.common.util.WrappedException;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.transaction.RecordingCommand;
+import org.eclipse.emf.transaction.ResourceSetChangeEvent;
+import org.eclipse.emf.transaction.ResourceSetListenerImpl;
 import org.eclipse.emf.transaction.TransactionalEditingDomain;
 import org.eclipse.graphiti.mm.pictograms.Diagram;
 import org.eclipse.graphiti.ui.services.GraphitiUi;
 import org.eclipse.graphiti.ui.services.IEmfService;
 import org.ifml.eclipse.core.runtime.Statuses;
+import org.ifml.eclipse.graphiti.metrics.Counter;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
 import org.ifml.eclipse.ui.CommonUi;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Provides utility methods for Graphiti diagrams.
  */
 public final class Diagrams {
 
+    /**
+     * The modes for saving the modified resources of an editing domain.
+     */
+    public enum SaveMode {
+
+        /** Each resource is serialized and written in turn while the editing domain is locked. */
+        SEQUENTIAL,
+
+        /**
+         * The resources are serialized to memory in turn while the editing domain is locked, then written in parallel outside of the
+         * lock. A resource remains modified if it changes while it is being written, or if it could not be written.
+         * <p>
+         * Serialization, which is the expensive part of a save, still runs under the lock, so this mode does not shorten the time
+         * during which the editing domain is locked: it only overlaps the file writes.
+         */
+        PARALLEL
+    }
+
+    private static final int MAX_SAVE_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService SAVE_EXECUTOR = createSaveExecutor();
+
+    private static final Timer SAVE_TIMER = Metrics.timer("diagrams.save");
+
+    private static final Counter SAVED_RESOURCES_COUNTER = Metrics.counter("diagrams.save.resources");
+
     private Diagrams() {
     }
 
+    private static ExecutorService createSaveExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_SAVE_THREADS, MAX_SAVE_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Diagram writer %d")
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Serializes a set of diagrams into an EMF file.
      * 
@@ -45,10 +107,35 @@ public final class Diagrams {
      */
     public static void createEmfFileForDiagram(URI fileResourceUri, final List<Diagram> diagrams, IProgressMonitor monitor)
             throws CoreException {
+        createEmfFileForDiagram(fileResourceUri, diagrams, null, monitor);
+    }
+
+    /**
+     * Serializes a set of diagrams into an EMF file having a specific format.
+     * 
+     * @param fileResourceUri
+     *            the file resource URI.
+     * @param diagrams
+     *            the diagrams.
+     * @param format
+     *            the file format, or {@code null} to use the resource factory registered for {@code fileResourceUri}.
+     * @param monitor
+     *            the progress monitor.
+     * @throws CoreException
+     *             if an exception occurred saving the EMF file.
+     */
+    public static void createEmfFileForDiagram(URI fileResourceUri, final List<Diagram> diagrams, DiagramFileFormat format,
+            IProgressMonitor monitor) throws CoreException {
         IEmfService emfService = GraphitiUi.getEmfService();
         TransactionalEditingDomain editingDomain = emfService.createResourceSetAndEditingDomain();
         ResourceSet resourceSet = editingDomain.getResourceSet();
-        final Resource resource = resourceSet.createResource(fileResourceUri);
+        final Resource resource;
+        if (format != null) {
+            resource = new CompactDiagramResource(fileResourceUri, format);
+            resourceSet.getResources().add(resource);
+        } else {
+            resource = resourceSet.createResource(fileResourceUri);
+        }
         final CommandStack commandStack = editingDomain.getCommandStack();
         commandStack.execute(new RecordingCommand(editingDomain) {
 
@@ -64,28 +151,230 @@ public final class Diagrams {
         editingDomain.dispose();
     }
 
-    private static void save(TransactionalEditingDomain editingDomain, IProgressMonitor monitor) throws CoreException {
-        IWorkspaceRunnable runnable = new SaveDiagramWorkspaceRunnable(editingDomain);
+    /**
+     * Serializes a stream of diagrams into an XMI file, holding in memory only the diagram being written.
+     * <p>
+     * Diagrams are pulled from {@code diagrams} and written one at a time without change recording; each diagram is detached after
+     * it has been written, so that it can be garbage collected. Diagrams must only reference their own elements or objects stored in
+     * other resources.
+     * <p>
+     * If the export is canceled or fails, the file is deleted rather than left truncated.
+     * 
+     * @param fileResourceUri
+     *            the file resource URI.
+     * @param diagrams
+     *            the iterator supplying the diagrams.
+     * @param monitor
+     *            the progress monitor, notified once per diagram.
+     * @return the number of written diagrams.
+     * @throws CoreException
+     *             if an exception occurred saving the EMF file.
+     */
+    public static int createEmfFileForDiagram(final URI fileResourceUri, final Iterator<Diagram> diagrams, IProgressMonitor monitor)
+            throws CoreException {
+        final int[] count = new int[1];
+        IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+
+            @Override
+            public void run(IProgressMonitor monitor) throws CoreException {
+                monitor.beginTask(fileResourceUri.lastSegment(), IProgressMonitor.UNKNOWN);
+                try {
+                    DiagramStreamWriter writer = new DiagramStreamWriter(URIConverter.INSTANCE.createOutputStream(fileResourceUri),
+                            fileResourceUri);
+                    boolean completed = false;
+                    try {
+                        while (diagrams.hasNext()) {
+                            if (monitor.isCanceled()) {
+                                throw new OperationCanceledException();
+                            }
+                            Diagram diagram = diagrams.next();
+                            monitor.subTask(diagram.getName());
+                            writer.write(diagram);
+                            monitor.worked(1);
+                        }
+                        writer.close();
+                        completed = true;
+                    } finally {
+                        if (!completed) {
+                            discard(writer, fileResourceUri);
+                        }
+                    }
+                    count[0] = writer.getCount();
+                } catch (IOException e) {
+                    throw new CoreException(Statuses.getErrorStatus(e, null, CommonUi.getDefault().getBundle()));
+                } finally {
+                    monitor.done();
+                }
+            }
+        };
         ResourcesPlugin.getWorkspace().run(runnable, monitor);
+        return count[0];
+    }
+
+    private static void discard(DiagramStreamWriter writer, URI fileResourceUri) {
+        try {
+            writer.abort();
+            URIConverter.INSTANCE.delete(fileResourceUri, null);
+        } catch (IOException e) {
+            // the failure which caused the discard is reported instead
+        }
+    }
+
+    /**
+     * Registers a {@link CompactDiagramResourceFactory} for a diagram file extension in a resource set.
+     * <p>
+     * The format of diagram files is detected automatically on load, so that existing XMI files can be read and are converted to
+     * {@code saveFormat} the next time they are saved.
+     * 
+     * @param resourceSet
+     *            the resource set.
+     * @param fileExtension
+     *            the diagram file extension.
+     * @param saveFormat
+     *            the format used on save.
+     */
+    public static void registerCompactFormat(ResourceSet resourceSet, String fileExtension, DiagramFileFormat saveFormat) {
+        resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap()
+                .put(fileExtension, new CompactDiagramResourceFactory(saveFormat));
+    }
+
+    private static void save(TransactionalEditingDomain editingDomain, IProgressMonitor monitor) throws CoreException {
+        save(editingDomain, SaveMode.SEQUENTIAL, monitor);
+    }
+
+    /**
+     * Saves all the modified resources of an editing domain.
+     * 
+     * @param editingDomain
+     *            the editing domain.
+     * @param mode
+     *            the save mode.
+     * @param monitor
+     *            the progress monitor.
+     * @return the time spent saving each resource, in milliseconds, keyed by resource URI.
+     * @throws CoreException
+     *             if an exception occurred saving the resources.
+     */
+    public static Map<URI, Long> save(TransactionalEditingDomain editingDomain, SaveMode mode, IProgressMonitor monitor)
+            throws CoreException {
+        SaveDiagramWorkspaceRunnable runnable = new SaveDiagramWorkspaceRunnable(editingDomain, mode);
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        if (mode == SaveMode.PARALLEL) {
+            // the writer threads lock the files they write, hence the workspace must not be locked by this thread
+            workspace.run(runnable, null, IWorkspace.AVOID_UPDATE, monitor);
+        } else {
+            workspace.run(runnable, monitor);
+        }
+        return runnable.getSaveTimes();
     }
 
     private static final class SaveDiagramWorkspaceRunnable implements IWorkspaceRunnable {
 
         private final TransactionalEditingDomain editingDomain;
 
-        public SaveDiagramWorkspaceRunnable(TransactionalEditingDomain editingDomain) {
+        private final SaveMode mode;
+
+        private final Map<URI, Long> saveTimes = Maps.newLinkedHashMap();
+
+        public SaveDiagramWorkspaceRunnable(TransactionalEditingDomain editingDomain, SaveMode mode) {
             this.editingDomain = editingDomain;
+            this.mode = mode;
+        }
+
+        public Map<URI, Long> getSaveTimes() {
+            return ImmutableMap.copyOf(saveTimes);
         }
 
         @Override
         public void run(IProgressMonitor monitor) throws CoreException {
+            long start = Metrics.start();
             try {
-                editingDomain.runExclusive(new SaveDiagramRunnable(editingDomain));
+                switch (mode) {
+                case PARALLEL:
+                    ResourceChangeTracker changeTracker = new ResourceChangeTracker();
+                    SerializeResourcesRunnable serializeRunnable = new SerializeResourcesRunnable(editingDomain, changeTracker);
+                    try {
+                        editingDomain.runExclusive(serializeRunnable);
+                        writeResources(serializeRunnable.getSerializedResources(), serializeRunnable.getSerializeTimes(),
+                                changeTracker);
+                    } finally {
+                        editingDomain.removeResourceSetListener(changeTracker);
+                    }
+                    break;
+                default:
+                    SaveDiagramRunnable saveRunnable = new SaveDiagramRunnable(editingDomain);
+                    editingDomain.runExclusive(saveRunnable);
+                    saveTimes.putAll(saveRunnable.getSaveTimes());
+                    break;
+                }
                 editingDomain.getCommandStack().flush();
+            } catch (IOException e) {
+                throw new CoreException(Statuses.getErrorStatus(e, null, CommonUi.getDefault().getBundle()));
             } catch (RuntimeException e) {
                 throw new CoreException(Statuses.getErrorStatus(e, null, CommonUi.getDefault().getBundle()));
             } catch (InterruptedException e) {
                 throw new CoreException(Statuses.getErrorStatus(e, null, CommonUi.getDefault().getBundle()));
+            } finally {
+                SAVE_TIMER.stop(start);
+                SAVED_RESOURCES_COUNTER.add(saveTimes.size());
+            }
+        }
+
+        private void writeResources(Map<Resource, byte[]> serializedResources, Map<URI, Long> serializeTimes,
+                final ResourceChangeTracker changeTracker) throws IOException, InterruptedException {
+            Map<Resource, Future<Long>> futures = Maps.newLinkedHashMap();
+            for (Map.Entry<Resource, byte[]> entry : serializedResources.entrySet()) {
+                final URI uri = entry.getKey().getURI();
+                final byte[] bytes = entry.getValue();
+                futures.put(entry.getKey(), SAVE_EXECUTOR.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        long startTime = System.nanoTime();
+                        OutputStream out = editingDomain.getResourceSet().getURIConverter().createOutputStream(uri);
+                        try {
+                            out.write(bytes);
+                        } finally {
+                            out.close();
+                        }
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                    }
+                }));
+            }
+            final List<Resource> writtenResources = Lists.newArrayList();
+            Throwable failure = null;
+            try {
+                for (Map.Entry<Resource, Future<Long>> entry : futures.entrySet()) {
+                    Resource resource = entry.getKey();
+                    try {
+                        long writeTime = entry.getValue().get();
+                        writtenResources.add(resource);
+                        saveTimes.put(resource.getURI(), serializeTimes.get(resource.getURI()) + writeTime);
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    }
+                }
+            } finally {
+                final Set<Resource> serializedSet = serializedResources.keySet();
+                editingDomain.runExclusive(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (Resource resource : serializedSet) {
+                            if (!writtenResources.contains(resource) || changeTracker.isChanged(resource)) {
+                                // serializing the resource cleared its modified flag, although its file was not written or
+                                // no longer matches its contents: the next save must not skip it
+                                resource.setModified(true);
+                            } else {
+                                resource.setModified(false);
+                            }
+                        }
+                    }
+                });
+            }
+            if (failure != null) {
+                Throwables.propagateIfPossible(failure, IOException.class);
+                throw new WrappedException((Exception) failure);
             }
         }
 
@@ -99,6 +388,12 @@ public final class Diagrams {
             this.editingDomain = editingDomain;
         }
 
+        private final Map<URI, Long> saveTimes = Maps.newLinkedHashMap();
+
+        public Map<URI, Long> getSaveTimes() {
+            return saveTimes;
+        }
+
         @Override
         public void run() {
             EList<Resource> resources = editingDomain.getResourceSet().getResources();
@@ -108,16 +403,110 @@ public final class Diagrams {
             for (int i = 0; i < resourcesArray.length; i++) {
                 final Resource resource = resourcesArray[i];
                 if (resource.isModified()) {
+                    long startTime = System.nanoTime();
                     try {
                         resource.save(null);
                     } catch (IOException e) {
                         throw new WrappedException(e);
                     }
                     savedResources.add(resource);
+                    saveTimes.put(resource.getURI(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                }
+            }
+
+        }
+    }
+
+    private static final class SerializeResourcesRunnable implements Runnable {
+
+        private final TransactionalEditingDomain editingDomain;
+
+        private final ResourceChangeTracker changeTracker;
+
+        private final Map<Resource, byte[]> serializedResources = Maps.newLinkedHashMap();
+
+        private final Map<URI, Long> serializeTimes = Maps.newHashMap();
+
+        public SerializeResourcesRunnable(TransactionalEditingDomain editingDomain, ResourceChangeTracker changeTracker) {
+            this.editingDomain = editingDomain;
+            this.changeTracker = changeTracker;
+        }
+
+        public Map<Resource, byte[]> getSerializedResources() {
+            return serializedResources;
+        }
+
+        public Map<URI, Long> getSerializeTimes() {
+            return serializeTimes;
+        }
+
+        @Override
+        public void run() {
+            // registered while holding the lock, so that no change can be committed before tracking starts
+            editingDomain.addResourceSetListener(changeTracker);
+            boolean serialized = false;
+            try {
+                for (Resource resource : editingDomain.getResourceSet().getResources()) {
+                    if (resource.isModified()) {
+                        long startTime = System.nanoTime();
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        try {
+                            resource.save(out, null);
+                        } catch (IOException e) {
+                            throw new WrappedException(e);
+                        }
+                        serializedResources.put(resource, out.toByteArray());
+                        serializeTimes.put(resource.getURI(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    }
+                }
+                serialized = true;
+            } finally {
+                if (!serialized) {
+                    // saving to memory cleared the modified flags, but none of the resources will be written
+                    for (Resource resource : serializedResources.keySet()) {
+                        resource.setModified(true);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the resources changed by the transactions committed after it has been added to an editing domain.
+     */
+    private static final class ResourceChangeTracker extends ResourceSetListenerImpl {
+
+        private final Set<Resource> changedResources = Sets.newHashSet();
+
+        @Override
+        public boolean isPostcommitOnly() {
+            return true;
+        }
+
+        @Override
+        public void resourceSetChanged(ResourceSetChangeEvent event) {
+            synchronized (changedResources) {
+                for (Notification notification : event.getNotifications()) {
+                    Object notifier = notification.getNotifier();
+                    if (notifier instanceof EObject) {
+                        Resource resource = ((EObject) notifier).eResource();
+                        if (resource != null) {
+                            changedResources.add(resource);
+                        }
+                    } else if ((notifier instanceof Resource)
+                            && (notification.getFeatureID(Resource.class) == Resource.RESOURCE__CONTENTS)) {
+                        changedResources.add((Resource) notifier);
+                    }
                 }
             }
+        }
 
+        boolean isChanged(Resource resource) {
+            synchronized (changedResources) {
+                return changedResources.contains(resource);
+            }
         }
+
     }
 
 }
@@ -0,0 +1,395 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+/**
+ * Gives access to the diagrams of a multi-diagram file without loading the whole file.
+ * <p>
+ * Opening the file only reads the index written at its end by
+ * {@link Diagrams#createEmfFileForDiagram(URI, java.util.Iterator, org.eclipse.core.runtime.IProgressMonitor)}, holding the name
+ * and the byte range of each diagram. A diagram is materialized on first access into its own resource, whose URI is the file URI
+ * with a {@code diagram} query holding the diagram position. Diagrams which are no longer used are not unloaded automatically:
+ * the owner of the file decides when to unload them by invoking {@link #unloadUnused()}.
+ * <p>
+ * Files without an index, such as the ones written by {@link Diagrams#createEmfFileForDiagram(URI, List,
+ * org.eclipse.core.runtime.IProgressMonitor)}, are rejected by {@link #open(File, ResourceSet)}; they should be loaded as regular
+ * resources.
+ */
+public final class LazyDiagramFile {
+
+    private static final String DIAGRAM_QUERY = "diagram=";
+
+    private final File file;
+
+    private final URI fileUri;
+
+    private final ResourceSet resourceSet;
+
+    private RandomAccessFile input;
+
+    private List<Entry> entries;
+
+    private LazyDiagramFile(File file, ResourceSet resourceSet) {
+        this.file = file;
+        this.fileUri = URI.createFileURI(file.getAbsolutePath());
+        this.resourceSet = resourceSet;
+    }
+
+    /**
+     * Opens a multi-diagram file, reading its index only.
+     * 
+     * @param file
+     *            the file.
+     * @param resourceSet
+     *            the resource set receiving the resources of the materialized diagrams.
+     * @return the opened file.
+     * @throws IOException
+     *             if an I/O error occurred or the file has no index.
+     */
+    public static LazyDiagramFile open(File file, ResourceSet resourceSet) throws IOException {
+        LazyDiagramFile lazyFile = new LazyDiagramFile(file, resourceSet);
+        lazyFile.readIndex();
+        return lazyFile;
+    }
+
+    /**
+     * Returns whether a file holds an index of its diagrams, and can therefore be opened lazily.
+     * 
+     * @param file
+     *            the file.
+     * @return {@code true} if the file has an index.
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    public static boolean hasIndex(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            return readIndexOffset(input) >= 0;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Returns the number of diagrams of the file.
+     * 
+     * @return the number of diagrams.
+     */
+    public synchronized int getDiagramCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the names of the diagrams of the file, read from the index.
+     * 
+     * @return the list of names.
+     */
+    public synchronized List<String> getDiagramNames() {
+        List<String> names = Lists.newArrayListWithCapacity(entries.size());
+        for (Entry entry : entries) {
+            names.add(entry.name);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the position of a diagram in the file.
+     * 
+     * @param name
+     *            the diagram name.
+     * @return the diagram position or {@code -1} if no diagram has the given name.
+     */
+    public synchronized int indexOf(String name) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether a diagram has been materialized.
+     * 
+     * @param index
+     *            the diagram position.
+     * @return {@code true} if the diagram is loaded.
+     */
+    public synchronized boolean isLoaded(int index) {
+        return entries.get(index).resource != null;
+    }
+
+    /**
+     * Returns a diagram, materializing it if needed, and marks it as used.
+     * <p>
+     * Each invocation should be balanced by an invocation of {@link #release(int)} when the diagram is no longer shown.
+     * 
+     * @param index
+     *            the diagram position.
+     * @return the diagram.
+     * @throws IOException
+     *             if an I/O error occurred loading the diagram.
+     */
+    public synchronized Diagram getDiagram(int index) throws IOException {
+        Entry entry = entries.get(index);
+        if (entry.resource == null) {
+            entry.resource = load(index, entry);
+        }
+        entry.useCount++;
+        return (Diagram) entry.resource.getContents().get(0);
+    }
+
+    /**
+     * Marks a diagram as no longer used, so that it can be unloaded by {@link #unloadUnused()}.
+     * 
+     * @param index
+     *            the diagram position.
+     */
+    public synchronized void release(int index) {
+        Entry entry = entries.get(index);
+        Preconditions.checkState(entry.useCount > 0, "Diagram %s is not in use", index);
+        entry.useCount--;
+    }
+
+    /**
+     * Unloads the materialized diagrams which are neither used nor modified.
+     * <p>
+     * The file does not monitor the available memory; this method is only invoked explicitly, e.g. when an editor showing some of
+     * the diagrams is closed.
+     * 
+     * @return the number of unloaded diagrams.
+     */
+    public synchronized int unloadUnused() {
+        int count = 0;
+        for (Entry entry : entries) {
+            if ((entry.resource != null) && (entry.useCount == 0) && !entry.resource.isModified()) {
+                unload(entry);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Saves the file in place. Diagrams which have not been materialized or modified are copied byte by byte.
+     * <p>
+     * If the save fails, the file is left unchanged and remains open, and the modified diagrams remain modified.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    public synchronized void save() throws IOException {
+        List<Resource> modifiedResources = Lists.newArrayList();
+        for (Entry entry : entries) {
+            if ((entry.resource != null) && entry.resource.isModified()) {
+                modifiedResources.add(entry.resource);
+            }
+        }
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        boolean replaced = false;
+        try {
+            DiagramStreamWriter writer = new DiagramStreamWriter(new FileOutputStream(tempFile), fileUri);
+            boolean written = false;
+            try {
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    if ((entry.resource != null) && modifiedResources.contains(entry.resource)) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        entry.resource.save(out, DiagramStreamWriter.SAVE_OPTIONS);
+                        Diagram diagram = (Diagram) entry.resource.getContents().get(0);
+                        writer.writeSerialized(out.toByteArray(), diagram.getName());
+                    } else {
+                        writer.writeSerialized(readBytes(entry), entry.name);
+                    }
+                }
+                writer.close();
+                written = true;
+            } finally {
+                if (!written) {
+                    writer.abort();
+                }
+            }
+            RandomAccessFile oldInput = input;
+            input = null;
+            oldInput.close();
+            File backupFile = new File(file.getPath() + ".bak");
+            backupFile.delete();
+            if (!file.renameTo(backupFile)) {
+                throw new IOException("Unable to replace " + file);
+            }
+            if (!tempFile.renameTo(file)) {
+                backupFile.renameTo(file);
+                throw new IOException("Unable to replace " + file);
+            }
+            replaced = true;
+            backupFile.delete();
+        } finally {
+            tempFile.delete();
+            if (input == null) {
+                reopen(replaced);
+            }
+            if (!replaced) {
+                // serializing a diagram clears its modified flag, but its changes have not been stored: the diagram must
+                // neither be unloaded nor skipped by the next save
+                for (Resource resource : modifiedResources) {
+                    resource.setModified(true);
+                }
+            }
+        }
+        List<Entry> oldEntries = entries;
+        readIndex();
+        for (int i = 0; i < oldEntries.size(); i++) {
+            Entry oldEntry = oldEntries.get(i);
+            Entry entry = entries.get(i);
+            entry.resource = oldEntry.resource;
+            entry.useCount = oldEntry.useCount;
+            if (entry.resource != null) {
+                entry.resource.setModified(false);
+            }
+        }
+    }
+
+    /**
+     * Unloads all the materialized diagrams and closes the file.
+     * 
+     * @throws IOException
+     *             if an I/O error occurred.
+     */
+    public synchronized void close() throws IOException {
+        for (Entry entry : entries) {
+            if (entry.resource != null) {
+                unload(entry);
+            }
+        }
+        if (input != null) {
+            input.close();
+            input = null;
+        }
+    }
+
+    private void reopen(boolean replaced) throws IOException {
+        if (replaced) {
+            input = new RandomAccessFile(file, "r");
+        } else {
+            try {
+                input = new RandomAccessFile(file, "r");
+            } catch (IOException e) {
+                // the failure which prevented the replacement is reported instead
+            }
+        }
+    }
+
+    private void readIndex() throws IOException {
+        if (input == null) {
+            input = new RandomAccessFile(file, "r");
+        }
+        long indexOffset = readIndexOffset(input);
+        if (indexOffset < 0) {
+            throw new IOException("No diagram index found in " + file);
+        }
+        byte[] indexBytes = new byte[(int) (input.length() - DiagramStreamWriter.FOOTER_LENGTH - indexOffset)];
+        input.seek(indexOffset);
+        input.readFully(indexBytes);
+        String index = new String(indexBytes, Charsets.UTF_8);
+        ImmutableList.Builder<Entry> builder = ImmutableList.builder();
+        for (String line : Splitter.on('\n').omitEmptyStrings().split(index)) {
+            if (line.startsWith(DiagramStreamWriter.INDEX_START) || line.startsWith(DiagramStreamWriter.INDEX_END)) {
+                continue;
+            }
+            List<String> fields = Lists.newArrayList(Splitter.on(' ').split(line));
+            if (fields.size() != 3) {
+                throw new IOException("Invalid diagram index entry in " + file + ": " + line);
+            }
+            builder.add(new Entry(Long.parseLong(fields.get(0)), Long.parseLong(fields.get(1)), DiagramStreamWriter
+                    .decodeName(Iterables.getLast(fields))));
+        }
+        entries = builder.build();
+    }
+
+    private static long readIndexOffset(RandomAccessFile input) throws IOException {
+        long length = input.length();
+        if (length < DiagramStreamWriter.FOOTER_LENGTH) {
+            return -1;
+        }
+        byte[] footerBytes = new byte[DiagramStreamWriter.FOOTER_LENGTH];
+        input.seek(length - footerBytes.length);
+        input.readFully(footerBytes);
+        String footer = new String(footerBytes, Charsets.UTF_8);
+        if (!footer.startsWith(DiagramStreamWriter.FOOTER_PREFIX) || !footer.endsWith(DiagramStreamWriter.FOOTER_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(footer.substring(DiagramStreamWriter.FOOTER_PREFIX.length(),
+                    DiagramStreamWriter.FOOTER_PREFIX.length() + DiagramStreamWriter.FOOTER_OFFSET_DIGITS));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private byte[] readBytes(Entry entry) throws IOException {
+        byte[] bytes = new byte[(int) (entry.end - entry.start)];
+        input.seek(entry.start);
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private Resource load(int index, Entry entry) throws IOException {
+        RootIndexedXmiResource resource = new RootIndexedXmiResource(fileUri.appendQuery(DIAGRAM_QUERY + index));
+        resource.setRootIndex(index);
+        resourceSet.getResources().add(resource);
+        try {
+            resource.load(new ByteArrayInputStream(readBytes(entry)), resourceSet.getLoadOptions());
+        } catch (IOException e) {
+            resourceSet.getResources().remove(resource);
+            throw e;
+        }
+        resource.setTrackingModification(true);
+        return resource;
+    }
+
+    private void unload(Entry entry) {
+        entry.resource.unload();
+        resourceSet.getResources().remove(entry.resource);
+        entry.resource = null;
+        entry.useCount = 0;
+    }
+
+    private static final class Entry {
+
+        private final long start;
+
+        private final long end;
+
+        private final String name;
+
+        private Resource resource;
+
+        private int useCount;
+
+        Entry(long start, long end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+
+    }
+
+}
@@ -0,0 +1,203 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPartViewer;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.ifml.base.Objects2;
+import org.ifml.eclipse.graphiti.metrics.Histogram;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+
+/**
+ * Coalesces the refresh requests of a content outline viewer.
+ * <p>
+ * The model objects changed by committed transactions are gathered into a single pending set, which is flushed on the UI thread at
+ * most once per refresh interval. Each changed object is refreshed once, regardless of the number of transactions which changed it:
+ * the visuals of its edit part are refreshed, and its children too only if one of its containment lists changed. Edit parts which
+ * do not implement {@link IncrementalEditPart} are fully refreshed.
+ */
+public final class OutlineRefreshScheduler {
+
+    /** The default refresh interval, in milliseconds, corresponding to one display frame. */
+    public static final int DEFAULT_INTERVAL = 16;
+
+    private static final Timer FLUSH_TIMER = Metrics.timer("outline.refresh");
+
+    private static final Histogram COALESCED_TRANSACTIONS = Metrics.histogram("outline.refresh.transactions");
+
+    private final EditPartViewer viewer;
+
+    private final Display display;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable scheduleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long elapsed = System.currentTimeMillis() - lastFlushTime;
+            display.timerExec((int) Math.max(0, interval - elapsed), flushRunnable);
+        }
+    };
+
+    private Set<EObject> pending = Sets.newHashSet();
+
+    private Set<EObject> pendingContainers = Sets.newHashSet();
+
+    private int pendingTransactions;
+
+    private boolean scheduled;
+
+    private volatile int interval = DEFAULT_INTERVAL;
+
+    private volatile long lastFlushTime;
+
+    private volatile int lastCoalescedTransactions;
+
+    private volatile int maxCoalescedTransactions;
+
+    /**
+     * Constructs a new scheduler.
+     * 
+     * @param viewer
+     *            the outline viewer.
+     * @param display
+     *            the display owning the viewer control.
+     */
+    public OutlineRefreshScheduler(EditPartViewer viewer, Display display) {
+        this.viewer = viewer;
+        this.display = display;
+    }
+
+    /**
+     * Returns the minimum time between two consecutive flushes.
+     * 
+     * @return the refresh interval, in milliseconds.
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the minimum time between two consecutive flushes.
+     * 
+     * @param interval
+     *            the refresh interval, in milliseconds.
+     */
+    public void setInterval(int interval) {
+        Preconditions.checkArgument(interval >= 0, "Invalid refresh interval: %s", interval);
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the number of transactions coalesced by the last flush.
+     * 
+     * @return the number of transactions.
+     */
+    public int getLastCoalescedTransactions() {
+        return lastCoalescedTransactions;
+    }
+
+    /**
+     * Returns the maximum number of transactions coalesced by a single flush.
+     * 
+     * @return the number of transactions.
+     */
+    public int getMaxCoalescedTransactions() {
+        return maxCoalescedTransactions;
+    }
+
+    /**
+     * Records the model objects changed by a committed transaction and schedules a flush, if needed.
+     * <p>
+     * This method can be invoked from any thread.
+     * 
+     * @param changedModels
+     *            the changed model objects.
+     * @param changedContainers
+     *            the changed model objects whose containment lists changed.
+     */
+    public void transactionCommitted(Collection<EObject> changedModels, Collection<EObject> changedContainers) {
+        synchronized (this) {
+            pending.addAll(changedModels);
+            pendingContainers.addAll(changedContainers);
+            pendingTransactions++;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        if (!display.isDisposed()) {
+            display.asyncExec(scheduleRunnable);
+        }
+    }
+
+    private void flush() {
+        Set<EObject> changedModels;
+        Set<EObject> changedContainers;
+        int transactions;
+        synchronized (this) {
+            changedModels = pending;
+            changedContainers = pendingContainers;
+            transactions = pendingTransactions;
+            pending = Sets.newHashSet();
+            pendingContainers = Sets.newHashSet();
+            pendingTransactions = 0;
+            scheduled = false;
+        }
+        lastFlushTime = System.currentTimeMillis();
+        lastCoalescedTransactions = transactions;
+        maxCoalescedTransactions = Math.max(maxCoalescedTransactions, transactions);
+        COALESCED_TRANSACTIONS.record(transactions);
+        Control control = viewer.getControl();
+        if ((control == null) || control.isDisposed()) {
+            return;
+        }
+        long start = Metrics.start();
+        Map<?, ?> editPartRegistry = viewer.getEditPartRegistry();
+        for (EObject changedModel : changedModels) {
+            EditPart editPart = Objects2.as(editPartRegistry.get(changedModel), EditPart.class);
+            if (editPart instanceof IncrementalEditPart) {
+                IncrementalEditPart incrementalEditPart = (IncrementalEditPart) editPart;
+                incrementalEditPart.refreshLabel();
+                if (changedContainers.contains(changedModel)) {
+                    incrementalEditPart.refreshChildren();
+                }
+            } else if (editPart != null) {
+                editPart.refresh();
+            }
+        }
+        FLUSH_TIMER.stop(start);
+    }
+
+    /**
+     * An edit part whose label and children can be refreshed separately.
+     */
+    public interface IncrementalEditPart extends EditPart {
+
+        /**
+         * Refreshes the label of the edit part.
+         */
+        void refreshLabel();
+
+        /**
+         * Refreshes the children of the edit part.
+         */
+        void refreshChildren();
+
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.gef.EditPart;
+import org.eclipse.gef.EditPartViewer;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.viewers.StructuredSelection;
+import org.ifml.base.Objects2;
+import org.ifml.eclipse.ui.viewers.Selections;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Synchronizes the selection of a diagram viewer, whose edit parts have pictogram elements as models, with the selection of an
+ * outline viewer, whose edit parts have business objects as models.
+ * <p>
+ * Selections are translated through hash lookups only: the edit part registries of both viewers map models to edit parts, and the
+ * {@link DiagramLinkIndex} of the diagram maps business objects to pictogram elements and back. Translating a selection thus takes
+ * time proportional to its size, regardless of the size of the diagram.
+ */
+final class OutlineSelectionSynchronizer implements ISelectionChangedListener {
+
+    private final AbstractGfEmfContentOutlinePage page;
+
+    private final EditPartViewer diagramViewer;
+
+    private final EditPartViewer outlineViewer;
+
+    private final Diagram diagram;
+
+    private boolean synchronizing;
+
+    OutlineSelectionSynchronizer(AbstractGfEmfContentOutlinePage page, EditPartViewer outlineViewer, EditPartViewer diagramViewer,
+            Diagram diagram) {
+        this.page = page;
+        this.outlineViewer = outlineViewer;
+        this.diagramViewer = diagramViewer;
+        this.diagram = diagram;
+    }
+
+    void hook() {
+        diagramViewer.addSelectionChangedListener(this);
+        outlineViewer.addSelectionChangedListener(this);
+    }
+
+    void unhook() {
+        diagramViewer.removeSelectionChangedListener(this);
+        outlineViewer.removeSelectionChangedListener(this);
+    }
+
+    @Override
+    public void selectionChanged(SelectionChangedEvent event) {
+        if (synchronizing) {
+            return;
+        }
+        synchronizing = true;
+        try {
+            List<?> selection = Selections.toStructuredSelection(event.getSelection()).toList();
+            if (event.getSelectionProvider() == diagramViewer) {
+                setViewerSelection(outlineViewer, toOutlineEditParts(selection));
+            } else if (event.getSelectionProvider() == outlineViewer) {
+                setViewerSelection(diagramViewer, toDiagramEditParts(selection));
+            }
+        } finally {
+            synchronizing = false;
+        }
+    }
+
+    /**
+     * Returns the outline edit parts corresponding to a list of objects, which can be business objects, pictogram elements or edit
+     * parts of either viewer. If the outline is lazy, the paths leading to the business objects are materialized.
+     * 
+     * @param objects
+     *            the objects.
+     * @return the list of outline edit parts.
+     */
+    List<EditPart> toOutlineEditParts(List<?> objects) {
+        Set<EObject> businessObjects = toBusinessObjects(objects);
+        page.revealInOutline(businessObjects);
+        Map<?, ?> editPartRegistry = outlineViewer.getEditPartRegistry();
+        List<EditPart> editParts = Lists.newArrayListWithCapacity(businessObjects.size());
+        for (EObject businessObject : businessObjects) {
+            EditPart editPart = Objects2.as(editPartRegistry.get(businessObject), EditPart.class);
+            if ((editPart != null) && editPart.isSelectable()) {
+                editParts.add(editPart);
+            }
+        }
+        return editParts;
+    }
+
+    /**
+     * Returns the diagram edit parts corresponding to a list of objects, which can be business objects, pictogram elements or edit
+     * parts of either viewer.
+     * 
+     * @param objects
+     *            the objects.
+     * @return the list of diagram edit parts.
+     */
+    List<EditPart> toDiagramEditParts(List<?> objects) {
+        DiagramLinkIndex linkIndex = DiagramLinkIndex.get(diagram);
+        Map<?, ?> editPartRegistry = diagramViewer.getEditPartRegistry();
+        Set<EditPart> editParts = Sets.newLinkedHashSet();
+        for (Object object : objects) {
+            Object model = (object instanceof EditPart) ? ((EditPart) object).getModel() : object;
+            if (model instanceof PictogramElement) {
+                addEditPart(editPartRegistry.get(model), editParts);
+            } else if (model instanceof EObject) {
+                for (PictogramElement pe : linkIndex.getPictogramElements((EObject) model)) {
+                    addEditPart(editPartRegistry.get(pe), editParts);
+                }
+            }
+        }
+        return Lists.newArrayList(editParts);
+    }
+
+    private Set<EObject> toBusinessObjects(Collection<?> objects) {
+        DiagramLinkIndex linkIndex = DiagramLinkIndex.get(diagram);
+        Set<EObject> businessObjects = Sets.newLinkedHashSet();
+        for (Object object : objects) {
+            Object model = (object instanceof EditPart) ? ((EditPart) object).getModel() : object;
+            if (model instanceof PictogramElement) {
+                model = linkIndex.getBusinessObject((PictogramElement) model);
+            }
+            EObject businessObject = Objects2.as(model, EObject.class);
+            if (businessObject != null) {
+                businessObjects.add(businessObject);
+            }
+        }
+        return businessObjects;
+    }
+
+    private static void addEditPart(Object object, Set<EditPart> editParts) {
+        EditPart editPart = Objects2.as(object, EditPart.class);
+        if ((editPart != null) && editPart.isSelectable()) {
+            editParts.add(editPart);
+        }
+    }
+
+    private static void setViewerSelection(EditPartViewer viewer, List<EditPart> editParts) {
+        viewer.setSelection(new StructuredSelection(editParts));
+        if (!editParts.isEmpty()) {
+            viewer.reveal(editParts.get(editParts.size() - 1));
+        }
+    }
+
+}
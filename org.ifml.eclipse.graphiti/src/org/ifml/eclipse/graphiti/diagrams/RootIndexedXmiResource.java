@@ -0,0 +1,42 @@
+package org.ifml.eclipse.graphiti.diagrams;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+/**
+ * An XMI resource holding a single root object which is stored at a specific position of a multi-root file.
+ * <p>
+ * The URI fragments of the contained objects use the position of the root in the file, so that a root can be serialized or loaded
+ * on its own while keeping the fragments valid for the whole file.
+ */
+final class RootIndexedXmiResource extends XMIResourceImpl {
+
+    private int rootIndex;
+
+    RootIndexedXmiResource(URI uri) {
+        super(uri);
+    }
+
+    int getRootIndex() {
+        return rootIndex;
+    }
+
+    void setRootIndex(int rootIndex) {
+        this.rootIndex = rootIndex;
+    }
+
+    @Override
+    protected String getURIFragmentRootSegment(EObject eObject) {
+        return Integer.toString(rootIndex);
+    }
+
+    @Override
+    protected EObject getEObjectForURIFragmentRootSegment(String uriFragmentRootSegment) {
+        if (uriFragmentRootSegment.equals(Integer.toString(rootIndex))) {
+            return getContents().isEmpty() ? null : getContents().get(0);
+        }
+        return super.getEObjectForURIFragmentRootSegment(uriFragmentRootSegment);
+    }
+
+}
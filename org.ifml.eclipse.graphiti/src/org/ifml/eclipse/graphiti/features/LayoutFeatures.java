@@ -9,17 +9,32 @@ import org.eclipse.graphiti.mm.pictograms.ContainerShape;
 import org.eclipse.graphiti.mm.pictograms.Shape;
 import org.eclipse.graphiti.services.Graphiti;
 import org.eclipse.graphiti.services.IGaService;
+import org.ifml.eclipse.graphiti.metrics.Counter;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
 
 /**
  * Provides utility methods for {@link ILayoutFeature}s.
  */
 public final class LayoutFeatures {
 
+    private static final Counter RESIZE_COUNTER = Metrics.counter("features.layout.resize");
+
+    private static final Counter RESIZE_CHANGED_COUNTER = Metrics.counter("features.layout.resize.changed");
+
+    private static final Counter SKIPPED_PASS_COUNTER = Metrics.counter("features.layout.resizeChildrenHorizontally.skipped");
+
+    private static final Counter EXECUTED_PASS_COUNTER = Metrics.counter("features.layout.resizeChildrenHorizontally.executed");
+
+    private static final Timer PASS_TIMER = Metrics.timer("features.layout.resizeChildrenHorizontally");
+
     private LayoutFeatures() {
     }
 
     /**
      * Resizes a shape providing a minimum width and height.
+     * <p>
+     * If the shape is resized while a {@link LayoutScheduler} is being flushed, its parent container is laid out too.
      * 
      * @param shape
      *            the shape to resize.
@@ -40,40 +55,63 @@ public final class LayoutFeatures {
             ga.setWidth(minWidth);
             changed = true;
         }
+        RESIZE_COUNTER.increment();
+        if (changed) {
+            RESIZE_CHANGED_COUNTER.increment();
+            LayoutScheduler.resized(shape);
+        }
         return changed;
 
     }
 
     /**
      * Resizes the width of child shapes of a container shape.
+     * <p>
+     * The pass is skipped if neither the container width nor its children changed since the previous pass; the numbers of skipped
+     * and executed passes are recorded by the {@link Metrics} counters {@code features.layout.resizeChildrenHorizontally.skipped}
+     * and {@code features.layout.resizeChildrenHorizontally.executed}.
      * 
      * @param containerShape
      *            the container shape.
      * @return {@code true} if something changed.
      */
     public static final boolean resizeChildrenHorizontally(ContainerShape containerShape) {
-        boolean changed = false;
-        IGaService gaService = Graphiti.getGaService();
         GraphicsAlgorithm containerGa = containerShape.getGraphicsAlgorithm();
         int containerWidth = containerGa.getWidth();
-        for (Shape shape : containerShape.getChildren()) {
-            if (shape.getLink() == null) {
-                GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
-                IDimension size = gaService.calculateSize(ga);
-                if (containerWidth != size.getWidth()) {
-                    if (ga instanceof Polyline) {
-                        Polyline polyline = (Polyline) ga;
-                        Point secondPoint = polyline.getPoints().get(1);
-                        Point newSecondPoint = gaService.createPoint(containerWidth, secondPoint.getY());
-                        polyline.getPoints().set(1, newSecondPoint);
-                        changed = true;
-                    } else {
-                        gaService.setWidth(ga, containerWidth);
-                        changed = true;
+        LayoutMemo memo = LayoutMemo.get(containerShape);
+        if (memo.isClean(containerWidth)) {
+            SKIPPED_PASS_COUNTER.increment();
+            return false;
+        }
+        EXECUTED_PASS_COUNTER.increment();
+        long start = Metrics.start();
+        memo.beginPass();
+        boolean changed = false;
+        try {
+            IGaService gaService = Graphiti.getGaService();
+            for (Shape shape : containerShape.getChildren()) {
+                if (shape.getLink() == null) {
+                    GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+                    IDimension size = gaService.calculateSize(ga);
+                    if (containerWidth != size.getWidth()) {
+                        if (ga instanceof Polyline) {
+                            Polyline polyline = (Polyline) ga;
+                            Point secondPoint = polyline.getPoints().get(1);
+                            secondPoint.setX(containerWidth);
+                            changed = true;
+                        } else {
+                            gaService.setWidth(ga, containerWidth);
+                            changed = true;
+                        }
                     }
                 }
             }
+        } catch (RuntimeException e) {
+            memo.abortPass();
+            throw e;
         }
+        memo.endPass(containerWidth);
+        PASS_TIMER.stop(start);
         return changed;
     }
 
@@ -0,0 +1,96 @@
+package org.ifml.eclipse.graphiti.features;
+
+import java.util.List;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.algorithms.Polyline;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Shape;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Records the container width applied by the last {@link LayoutFeatures#resizeChildrenHorizontally(ContainerShape)} pass.
+ * <p>
+ * The memo is attached to the container shape and observes its children and the graphics algorithms resized by the pass: any change
+ * to them makes the memo dirty, so that the next pass is executed.
+ */
+final class LayoutMemo extends AdapterImpl {
+
+    private final ContainerShape containerShape;
+
+    private final List<Notifier> observed = Lists.newArrayList();
+
+    private int width;
+
+    private boolean clean;
+
+    private boolean updating;
+
+    private LayoutMemo(ContainerShape containerShape) {
+        this.containerShape = containerShape;
+    }
+
+    static LayoutMemo get(ContainerShape containerShape) {
+        for (Adapter adapter : containerShape.eAdapters()) {
+            if ((adapter instanceof LayoutMemo) && (((LayoutMemo) adapter).containerShape == containerShape)) {
+                return (LayoutMemo) adapter;
+            }
+        }
+        LayoutMemo memo = new LayoutMemo(containerShape);
+        containerShape.eAdapters().add(memo);
+        return memo;
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        if (!updating && !msg.isTouch() && (msg.getEventType() != Notification.REMOVING_ADAPTER)) {
+            clean = false;
+        }
+    }
+
+    boolean isClean(int containerWidth) {
+        return clean && (width == containerWidth);
+    }
+
+    void beginPass() {
+        updating = true;
+    }
+
+    void endPass(int containerWidth) {
+        for (Notifier notifier : observed) {
+            notifier.eAdapters().remove(this);
+        }
+        observed.clear();
+        for (Shape shape : containerShape.getChildren()) {
+            observe(shape);
+            if (shape.getLink() == null) {
+                GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+                if (ga != null) {
+                    observe(ga);
+                    if ((ga instanceof Polyline) && (((Polyline) ga).getPoints().size() > 1)) {
+                        observe(((Polyline) ga).getPoints().get(1));
+                    }
+                }
+            }
+        }
+        width = containerWidth;
+        clean = true;
+        updating = false;
+    }
+
+    void abortPass() {
+        clean = false;
+        updating = false;
+    }
+
+    private void observe(Notifier notifier) {
+        notifier.eAdapters().add(this);
+        observed.add(notifier);
+    }
+
+}
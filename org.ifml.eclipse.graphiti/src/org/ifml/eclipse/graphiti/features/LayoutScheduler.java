@@ -0,0 +1,336 @@
+package org.ifml.eclipse.graphiti.features;
+
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.emf.common.command.Command;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.transaction.RecordingCommand;
+import org.eclipse.emf.transaction.ResourceSetChangeEvent;
+import org.eclipse.emf.transaction.ResourceSetListenerImpl;
+import org.eclipse.emf.transaction.RollbackException;
+import org.eclipse.emf.transaction.Transaction;
+import org.eclipse.emf.transaction.TransactionalEditingDomain;
+import org.eclipse.emf.transaction.TransactionalEditingDomainEvent;
+import org.eclipse.emf.transaction.TransactionalEditingDomainListenerImpl;
+import org.eclipse.emf.transaction.impl.InternalTransactionalEditingDomain;
+import org.eclipse.emf.transaction.util.TransactionUtil;
+import org.eclipse.graphiti.features.IFeatureProvider;
+import org.eclipse.graphiti.features.context.impl.LayoutContext;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.eclipse.graphiti.mm.pictograms.Shape;
+import org.ifml.eclipse.graphiti.metrics.Histogram;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Collects the pictogram elements to be laid out and lays each of them out once, deepest elements first.
+ * <p>
+ * When an element has been laid out, its parent container is laid out too only if {@link LayoutFeatures#resize(ContainerShape, int,
+ * int)} reported that the size of the element changed, so that layouts propagate bottom-up no further than needed.
+ * <p>
+ * The scheduler of an editing domain, returned by {@link #get(TransactionalEditingDomain)}, collects the elements marked as dirty
+ * during a write transaction and flushes them when the transaction is about to close, while it is still active, and again when
+ * its pre-commit triggers run, so that the layouts are recorded by the same transaction even if it made no other change. The
+ * elements still pending when the transaction is closed, i.e. because it was rolled back, are discarded, so that they are not
+ * laid out by the next transaction. Other schedulers are flushed explicitly.
+ */
+public final class LayoutScheduler {
+
+    private static final Map<TransactionalEditingDomain, LayoutScheduler> schedulers = new MapMaker().weakKeys().makeMap();
+
+    private static final ThreadLocal<LayoutScheduler> FLUSHING = new ThreadLocal<LayoutScheduler>();
+
+    private static final Histogram LAYOUTS_PER_FLUSH = Metrics.histogram("features.layoutScheduler.layouts");
+
+    private final Map<PictogramElement, Entry> pending = Maps.newLinkedHashMap();
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+
+    private final Set<PictogramElement> done = Sets.newHashSet();
+
+    private final List<Shape> resizedShapes = Lists.newArrayList();
+
+    private int sequence;
+
+    private boolean flushing;
+
+    private int lastLayoutCount;
+
+    /**
+     * Constructs a new scheduler, to be flushed explicitly.
+     */
+    public LayoutScheduler() {
+    }
+
+    /**
+     * Returns the scheduler flushed when the write transactions of an editing domain are about to commit, installing it if needed.
+     * 
+     * @param domain
+     *            the editing domain.
+     * @return the scheduler.
+     */
+    public static LayoutScheduler get(TransactionalEditingDomain domain) {
+        synchronized (schedulers) {
+            LayoutScheduler scheduler = schedulers.get(domain);
+            if (scheduler == null) {
+                scheduler = new LayoutScheduler();
+                domain.addResourceSetListener(new CommitListener(scheduler));
+                TransactionalEditingDomain.Lifecycle lifecycle = TransactionUtil.getAdapter(domain,
+                        TransactionalEditingDomain.Lifecycle.class);
+                if (lifecycle != null) {
+                    lifecycle.addTransactionalEditingDomainListener(new CloseListener(scheduler));
+                }
+                schedulers.put(domain, scheduler);
+            }
+            return scheduler;
+        }
+    }
+
+    /**
+     * Returns whether the layouts of an editing domain can be deferred to its scheduler, i.e. whether the current thread is
+     * running a write transaction on the domain whose triggers are enabled. In this case the elements marked as dirty in the
+     * scheduler of the domain are laid out before the transaction commits; otherwise they should be laid out immediately.
+     * 
+     * @param domain
+     *            the editing domain.
+     * @return {@code true} if a write transaction with triggers is active on the current thread.
+     */
+    public static boolean canDefer(TransactionalEditingDomain domain) {
+        if (!(domain instanceof InternalTransactionalEditingDomain)) {
+            return false;
+        }
+        Transaction transaction = ((InternalTransactionalEditingDomain) domain).getActiveTransaction();
+        return (transaction != null) && !transaction.isReadOnly() && (transaction.getOwner() == Thread.currentThread())
+                && !Boolean.TRUE.equals(transaction.getOptions().get(Transaction.OPTION_NO_TRIGGERS));
+    }
+
+    /**
+     * Marks a pictogram element as needing a layout.
+     * <p>
+     * During a flush, an element which has already been laid out by the same flush is not laid out again. The scheduler of an
+     * editing domain is flushed before the transaction commits; elements should only be marked as dirty in it when
+     * {@link #canDefer(TransactionalEditingDomain)} holds.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @param featureProvider
+     *            the feature provider laying out the element.
+     */
+    public void markDirty(PictogramElement pictogramElement, IFeatureProvider featureProvider) {
+        if (pending.containsKey(pictogramElement) || done.contains(pictogramElement)) {
+            return;
+        }
+        Entry entry = new Entry(pictogramElement, featureProvider, sequence++);
+        pending.put(pictogramElement, entry);
+        if (flushing) {
+            queue.add(entry);
+        }
+    }
+
+    /**
+     * Returns whether a pictogram element is waiting to be laid out.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @return {@code true} if the element is dirty.
+     */
+    public boolean isDirty(PictogramElement pictogramElement) {
+        return pending.containsKey(pictogramElement);
+    }
+
+    /**
+     * Returns whether the scheduler is being flushed.
+     * 
+     * @return {@code true} if the scheduler is being flushed.
+     */
+    public boolean isFlushing() {
+        return flushing;
+    }
+
+    /**
+     * Lays out the dirty pictogram elements, deepest first, and their ancestors whose size changed as a consequence.
+     * <p>
+     * Elements which are no longer contained in a diagram are skipped.
+     * 
+     * @return the number of layouts.
+     */
+    public int flush() {
+        if (flushing) {
+            return 0;
+        }
+        flushing = true;
+        LayoutScheduler previous = FLUSHING.get();
+        FLUSHING.set(this);
+        int layoutCount = 0;
+        try {
+            queue.addAll(pending.values());
+            while (!queue.isEmpty()) {
+                Entry entry = queue.poll();
+                pending.remove(entry.pictogramElement);
+                if (!done.add(entry.pictogramElement) || !(EcoreUtil.getRootContainer(entry.pictogramElement) instanceof Diagram)) {
+                    continue;
+                }
+                resizedShapes.clear();
+                entry.featureProvider.layoutIfPossible(new LayoutContext(entry.pictogramElement));
+                layoutCount++;
+                for (Shape shape : resizedShapes) {
+                    ContainerShape container = shape.getContainer();
+                    if ((container != null) && !(container instanceof Diagram)) {
+                        markDirty(container, entry.featureProvider);
+                    }
+                }
+            }
+        } finally {
+            if (previous != null) {
+                FLUSHING.set(previous);
+            } else {
+                FLUSHING.remove();
+            }
+            flushing = false;
+            pending.clear();
+            queue.clear();
+            done.clear();
+            resizedShapes.clear();
+            lastLayoutCount = layoutCount;
+            LAYOUTS_PER_FLUSH.record(layoutCount);
+        }
+        return layoutCount;
+    }
+
+    /**
+     * Returns the number of layouts performed by the last flush, i.e. by the last commit for the scheduler of an editing domain.
+     * 
+     * @return the number of layouts.
+     */
+    public int getLastLayoutCount() {
+        return lastLayoutCount;
+    }
+
+    /**
+     * Discards the elements waiting to be laid out, unless the scheduler is being flushed.
+     */
+    private void discard() {
+        if (!flushing) {
+            pending.clear();
+            sequence = 0;
+        }
+    }
+
+    /**
+     * Records that a shape has been resized by the layout being performed by a flush on the current thread, if any.
+     * 
+     * @param shape
+     *            the resized shape.
+     */
+    static void resized(Shape shape) {
+        LayoutScheduler scheduler = FLUSHING.get();
+        if (scheduler != null) {
+            scheduler.resizedShapes.add(shape);
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final PictogramElement pictogramElement;
+
+        private final IFeatureProvider featureProvider;
+
+        private final int depth;
+
+        private final int sequence;
+
+        Entry(PictogramElement pictogramElement, IFeatureProvider featureProvider, int sequence) {
+            this.pictogramElement = pictogramElement;
+            this.featureProvider = featureProvider;
+            this.sequence = sequence;
+            int peDepth = 0;
+            for (EObject container = pictogramElement.eContainer(); container != null; container = container.eContainer()) {
+                peDepth++;
+            }
+            this.depth = peDepth;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (depth != other.depth) {
+                return (depth > other.depth) ? -1 : 1;
+            }
+            return (sequence < other.sequence) ? -1 : ((sequence == other.sequence) ? 0 : 1);
+        }
+
+    }
+
+    private static final class CommitListener extends ResourceSetListenerImpl {
+
+        private final LayoutScheduler scheduler;
+
+        CommitListener(LayoutScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public boolean isPrecommitOnly() {
+            return true;
+        }
+
+        @Override
+        public boolean isAggregatePrecommitListener() {
+            return true;
+        }
+
+        @Override
+        public Command transactionAboutToCommit(ResourceSetChangeEvent event) throws RollbackException {
+            if (scheduler.pending.isEmpty()) {
+                return null;
+            }
+            return new RecordingCommand(event.getEditingDomain(), "Layout") {
+                @Override
+                protected void doExecute() {
+                    scheduler.flush();
+                }
+            };
+        }
+
+    }
+
+    private static final class CloseListener extends TransactionalEditingDomainListenerImpl {
+
+        private final LayoutScheduler scheduler;
+
+        CloseListener(LayoutScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void transactionClosing(TransactionalEditingDomainEvent event) {
+            // pre-commit triggers only run if the transaction changed the model, hence the pending layouts are flushed here too,
+            // while the transaction is still active
+            if (isRootWrite(event.getTransaction()) && !scheduler.pending.isEmpty()) {
+                scheduler.flush();
+            }
+        }
+
+        @Override
+        public void transactionClosed(TransactionalEditingDomainEvent event) {
+            if (isRootWrite(event.getTransaction())) {
+                scheduler.discard();
+            }
+        }
+
+        private static boolean isRootWrite(Transaction transaction) {
+            return (transaction.getParent() == null) && !transaction.isReadOnly();
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.ifml.eclipse.graphiti.geometry;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+
+/**
+ * A mutable accumulator of rectangle bounds.
+ * <p>
+ * Bounds can be reused across calls, so that the union of many rectangles, points or graphics algorithms is computed without
+ * allocating intermediate objects.
+ */
+public final class Bounds {
+
+    private boolean empty = true;
+
+    private int minX;
+
+    private int minY;
+
+    private int maxX;
+
+    private int maxY;
+
+    /**
+     * Empties the bounds.
+     * 
+     * @return these bounds.
+     */
+    public Bounds reset() {
+        empty = true;
+        minX = 0;
+        minY = 0;
+        maxX = 0;
+        maxY = 0;
+        return this;
+    }
+
+    /**
+     * Extends the bounds to contain a point.
+     * 
+     * @param x
+     *            the horizontal coordinate.
+     * @param y
+     *            the vertical coordinate.
+     * @return these bounds.
+     */
+    public Bounds add(int x, int y) {
+        return add(x, y, 0, 0);
+    }
+
+    /**
+     * Extends the bounds to contain a rectangle.
+     * 
+     * @param x
+     *            the horizontal coordinate.
+     * @param y
+     *            the vertical coordinate.
+     * @param width
+     *            the width.
+     * @param height
+     *            the height.
+     * @return these bounds.
+     */
+    public Bounds add(int x, int y, int width, int height) {
+        if (empty) {
+            minX = x;
+            minY = y;
+            maxX = x + width;
+            maxY = y + height;
+            empty = false;
+        } else {
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x + width);
+            maxY = Math.max(maxY, y + height);
+        }
+        return this;
+    }
+
+    /**
+     * Extends the bounds to contain a rectangle.
+     * 
+     * @param rect
+     *            the rectangle.
+     * @return these bounds.
+     */
+    public Bounds add(Rectangle rect) {
+        return add(rect.x, rect.y, rect.width, rect.height);
+    }
+
+    /**
+     * Extends the bounds to contain the bounds of a graphics algorithm.
+     * 
+     * @param ga
+     *            the graphics algorithm.
+     * @return these bounds.
+     */
+    public Bounds add(GraphicsAlgorithm ga) {
+        return add(ga.getX(), ga.getY(), ga.getWidth(), ga.getHeight());
+    }
+
+    /**
+     * Returns whether nothing has been added to the bounds since they were created or reset.
+     * 
+     * @return {@code true} if the bounds are empty.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Returns the minimum horizontal coordinate.
+     * 
+     * @return the minimum X.
+     */
+    public int getX() {
+        return minX;
+    }
+
+    /**
+     * Returns the minimum vertical coordinate.
+     * 
+     * @return the minimum Y.
+     */
+    public int getY() {
+        return minY;
+    }
+
+    /**
+     * Returns the maximum horizontal coordinate.
+     * 
+     * @return the maximum X.
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Returns the maximum vertical coordinate.
+     * 
+     * @return the maximum Y.
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Returns the width of the bounds.
+     * 
+     * @return the width.
+     */
+    public int getWidth() {
+        return maxX - minX;
+    }
+
+    /**
+     * Returns the height of the bounds.
+     * 
+     * @return the height.
+     */
+    public int getHeight() {
+        return maxY - minY;
+    }
+
+    /**
+     * Copies the bounds into a rectangle.
+     * 
+     * @param rect
+     *            the target rectangle.
+     * @return {@code rect}.
+     */
+    public Rectangle toRectangle(Rectangle rect) {
+        return rect.setBounds(minX, minY, getWidth(), getHeight());
+    }
+
+    /**
+     * Returns a new rectangle holding the bounds.
+     * 
+     * @return the rectangle.
+     */
+    public Rectangle toRectangle() {
+        return new Rectangle(minX, minY, getWidth(), getHeight());
+    }
+
+    @Override
+    public String toString() {
+        return "Bounds(" + minX + ", " + minY + ", " + getWidth() + ", " + getHeight() + ")";
+    }
+
+}
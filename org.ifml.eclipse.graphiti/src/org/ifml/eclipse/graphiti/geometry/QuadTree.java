@@ -0,0 +1,453 @@
+package org.ifml.eclipse.graphiti.geometry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.draw2d.geometry.Rectangle;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A region quadtree indexing items by their rectangular bounds.
+ * <p>
+ * Each item is stored in the smallest node whose square region fully contains its bounds. The root region grows on demand, so
+ * that items can be placed anywhere, including at negative coordinates. Items can be updated and removed in logarithmic time,
+ * since each item remembers its node.
+ * 
+ * @param <T>
+ *            the type of the indexed items.
+ */
+public final class QuadTree<T> {
+
+    private static final int MAX_ITEMS = 8;
+
+    private static final int MAX_DEPTH = 24;
+
+    private static final int MIN_SIZE = 64;
+
+    private final Map<T, Entry<T>> entries = Maps.newHashMap();
+
+    private Node<T> root;
+
+    /**
+     * Returns the number of items of the tree.
+     * 
+     * @return the number of items.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns whether an item is stored in the tree.
+     * 
+     * @param item
+     *            the item.
+     * @return {@code true} if the item is stored in the tree.
+     */
+    public boolean contains(T item) {
+        return entries.containsKey(item);
+    }
+
+    /**
+     * Returns the bounds of an item.
+     * 
+     * @param item
+     *            the item.
+     * @return a new rectangle holding the bounds or {@code null} if the item is not stored in the tree.
+     */
+    public Rectangle getBounds(T item) {
+        Entry<T> entry = entries.get(item);
+        return (entry != null) ? new Rectangle(entry.x, entry.y, entry.width, entry.height) : null;
+    }
+
+    /**
+     * Stores an item, replacing its previous bounds if the item is already stored in the tree.
+     * 
+     * @param item
+     *            the item.
+     * @param x
+     *            the horizontal coordinate of the item.
+     * @param y
+     *            the vertical coordinate of the item.
+     * @param width
+     *            the width of the item.
+     * @param height
+     *            the height of the item.
+     */
+    public void put(T item, int x, int y, int width, int height) {
+        Preconditions.checkNotNull(item);
+        Preconditions.checkArgument((width >= 0) && (height >= 0), "Invalid size: %s x %s", width, height);
+        Entry<T> entry = entries.get(item);
+        if (entry != null) {
+            if ((entry.x == x) && (entry.y == y) && (entry.width == width) && (entry.height == height)) {
+                return;
+            }
+            detach(entry);
+        } else {
+            entry = new Entry<T>(item);
+            entries.put(item, entry);
+        }
+        entry.x = x;
+        entry.y = y;
+        entry.width = width;
+        entry.height = height;
+        grow(entry);
+        insert(root, entry);
+    }
+
+    /**
+     * Removes an item.
+     * 
+     * @param item
+     *            the item.
+     * @return {@code true} if the item was stored in the tree.
+     */
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        detach(entry);
+        return true;
+    }
+
+    /**
+     * Removes all the items.
+     */
+    public void clear() {
+        entries.clear();
+        root = null;
+    }
+
+    /**
+     * Returns the items whose bounds contain a point.
+     * 
+     * @param x
+     *            the horizontal coordinate of the point.
+     * @param y
+     *            the vertical coordinate of the point.
+     * @return the list of items.
+     */
+    public List<T> query(int x, int y) {
+        List<T> result = Lists.newArrayList();
+        for (Node<T> node = root; (node != null) && node.contains(x, y); node = node.getChild(x, y)) {
+            for (Entry<T> entry : node.items) {
+                if ((x >= entry.x) && (y >= entry.y) && (x < entry.x + entry.width) && (y < entry.y + entry.height)) {
+                    result.add(entry.item);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the items whose bounds intersect a rectangle.
+     * 
+     * @param x
+     *            the horizontal coordinate of the rectangle.
+     * @param y
+     *            the vertical coordinate of the rectangle.
+     * @param width
+     *            the width of the rectangle.
+     * @param height
+     *            the height of the rectangle.
+     * @return the list of items.
+     */
+    public List<T> query(int x, int y, int width, int height) {
+        List<T> result = Lists.newArrayList();
+        if (root != null) {
+            query(root, x, y, (long) x + width, (long) y + height, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the items whose bounds intersect a rectangle.
+     * 
+     * @param rect
+     *            the rectangle.
+     * @return the list of items.
+     */
+    public List<T> query(Rectangle rect) {
+        return query(rect.x, rect.y, rect.width, rect.height);
+    }
+
+    /**
+     * Returns the item nearest to a point, measuring the distance between the point and the bounds of each item.
+     * 
+     * @param x
+     *            the horizontal coordinate of the point.
+     * @param y
+     *            the vertical coordinate of the point.
+     * @return the nearest item or {@code null} if the tree is empty.
+     */
+    public T nearest(int x, int y) {
+        if (root == null) {
+            return null;
+        }
+        PriorityQueue<Candidate<T>> queue = new PriorityQueue<Candidate<T>>();
+        queue.add(new Candidate<T>(root.distance(x, y), root, null));
+        while (!queue.isEmpty()) {
+            Candidate<T> candidate = queue.poll();
+            if (candidate.entry != null) {
+                return candidate.entry.item;
+            }
+            Node<T> node = candidate.node;
+            for (Entry<T> entry : node.items) {
+                queue.add(new Candidate<T>(entry.distance(x, y), null, entry));
+            }
+            if (node.children != null) {
+                for (Node<T> child : node.children) {
+                    if (child.count > 0) {
+                        queue.add(new Candidate<T>(child.distance(x, y), child, null));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void query(Node<T> node, int x, int y, long maxX, long maxY, List<T> result) {
+        if ((node.count == 0) || (node.x >= maxX) || (node.y >= maxY) || (node.x + node.size <= x) || (node.y + node.size <= y)) {
+            return;
+        }
+        for (Entry<T> entry : node.items) {
+            if ((entry.x < maxX) && (entry.y < maxY) && ((long) entry.x + entry.width > x) && ((long) entry.y + entry.height > y)) {
+                result.add(entry.item);
+            }
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children) {
+                query(child, x, y, maxX, maxY, result);
+            }
+        }
+    }
+
+    private void grow(Entry<T> entry) {
+        if (root == null) {
+            long size = MIN_SIZE;
+            while ((size < entry.width) || (size < entry.height)) {
+                size <<= 1;
+            }
+            root = new Node<T>(null, align(entry.x, size), align(entry.y, size), size, 0);
+        }
+        while (!root.contains(entry)) {
+            Node<T> oldRoot = root;
+            long size = oldRoot.size;
+            long x = (entry.x < oldRoot.x) ? oldRoot.x - size : oldRoot.x;
+            long y = (entry.y < oldRoot.y) ? oldRoot.y - size : oldRoot.y;
+            root = new Node<T>(null, x, y, size * 2, 0);
+            root.count = oldRoot.count;
+            if (oldRoot.count > 0) {
+                root.split();
+                int index = root.getChildIndex(oldRoot.x, oldRoot.y);
+                oldRoot.parent = root;
+                oldRoot.shift(1);
+                root.children[index] = oldRoot;
+            }
+        }
+    }
+
+    private static long align(int value, long size) {
+        return value - (((value % size) + size) % size);
+    }
+
+    private void insert(Node<T> node, Entry<T> entry) {
+        while (true) {
+            node.count++;
+            if (node.children == null) {
+                if ((node.items.size() < MAX_ITEMS) || (node.depth >= MAX_DEPTH) || (node.size < 2)) {
+                    break;
+                }
+                node.split();
+                List<Entry<T>> items = node.items;
+                node.items = Lists.newArrayList();
+                for (Entry<T> item : items) {
+                    Node<T> child = node.getChild(item);
+                    if (child != null) {
+                        child.add(item);
+                    } else {
+                        node.items.add(item);
+                    }
+                }
+            }
+            Node<T> child = node.getChild(entry);
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        node.items.add(entry);
+        entry.node = node;
+    }
+
+    private void detach(Entry<T> entry) {
+        Node<T> node = entry.node;
+        node.items.remove(entry);
+        entry.node = null;
+        Node<T> collapsible = null;
+        for (Node<T> ancestor = node; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.count--;
+            if ((ancestor.children != null) && (ancestor.count <= MAX_ITEMS)) {
+                collapsible = ancestor;
+            }
+        }
+        if (collapsible != null) {
+            collapsible.collapse();
+        }
+    }
+
+    private static final class Entry<T> {
+
+        private final T item;
+
+        private int x;
+
+        private int y;
+
+        private int width;
+
+        private int height;
+
+        private Node<T> node;
+
+        Entry(T item) {
+            this.item = item;
+        }
+
+        long distance(int px, int py) {
+            long dx = Math.max(0, Math.max((long) x - px, (long) px - ((long) x + width)));
+            long dy = Math.max(0, Math.max((long) y - py, (long) py - ((long) y + height)));
+            return dx * dx + dy * dy;
+        }
+
+    }
+
+    private static final class Node<T> {
+
+        private Node<T> parent;
+
+        private final long x;
+
+        private final long y;
+
+        private final long size;
+
+        private int depth;
+
+        private int count;
+
+        private List<Entry<T>> items = Lists.newArrayList();
+
+        private Node<T>[] children;
+
+        Node(Node<T> parent, long x, long y, long size, int depth) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.depth = depth;
+        }
+
+        boolean contains(long px, long py) {
+            return (px >= x) && (py >= y) && (px < x + size) && (py < y + size);
+        }
+
+        boolean contains(Entry<T> entry) {
+            return (entry.x >= x) && (entry.y >= y) && ((long) entry.x + entry.width <= x + size)
+                    && ((long) entry.y + entry.height <= y + size);
+        }
+
+        long distance(int px, int py) {
+            long dx = Math.max(0, Math.max(x - px, px - (x + size)));
+            long dy = Math.max(0, Math.max(y - py, py - (y + size)));
+            return dx * dx + dy * dy;
+        }
+
+        int getChildIndex(long px, long py) {
+            long half = size / 2;
+            return ((px >= x + half) ? 1 : 0) + ((py >= y + half) ? 2 : 0);
+        }
+
+        Node<T> getChild(int px, int py) {
+            return (children != null) ? children[getChildIndex(px, py)] : null;
+        }
+
+        Node<T> getChild(Entry<T> entry) {
+            if (children == null) {
+                return null;
+            }
+            Node<T> child = children[getChildIndex(entry.x, entry.y)];
+            return child.contains(entry) ? child : null;
+        }
+
+        void add(Entry<T> entry) {
+            items.add(entry);
+            entry.node = this;
+            count++;
+        }
+
+        @SuppressWarnings("unchecked")
+        void split() {
+            long half = size / 2;
+            children = new Node[4];
+            children[0] = new Node<T>(this, x, y, half, depth + 1);
+            children[1] = new Node<T>(this, x + half, y, half, depth + 1);
+            children[2] = new Node<T>(this, x, y + half, half, depth + 1);
+            children[3] = new Node<T>(this, x + half, y + half, half, depth + 1);
+        }
+
+        void shift(int delta) {
+            depth += delta;
+            if (children != null) {
+                for (Node<T> child : children) {
+                    child.shift(delta);
+                }
+            }
+        }
+
+        void collapse() {
+            if (children != null) {
+                for (Node<T> child : children) {
+                    child.collapse();
+                    for (Entry<T> entry : child.items) {
+                        entry.node = this;
+                        items.add(entry);
+                    }
+                }
+                children = null;
+            }
+        }
+
+    }
+
+    private static final class Candidate<T> implements Comparable<Candidate<T>> {
+
+        private final long distance;
+
+        private final Node<T> node;
+
+        private final Entry<T> entry;
+
+        Candidate(long distance, Node<T> node, Entry<T> entry) {
+            this.distance = distance;
+            this.node = node;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Candidate<T> other) {
+            if (distance != other.distance) {
+                return (distance < other.distance) ? -1 : 1;
+            }
+            // visits items before nodes at the same distance
+            return ((entry != null) ? 0 : 1) - ((other.entry != null) ? 0 : 1);
+        }
+
+    }
+
+}
@@ -18,11 +18,11 @@ public class Rectangles {
      * @return the union.
      */
     public static Rectangle union(List<Rectangle> rects) {
-        Rectangle result = new Rectangle();
-        for (Rectangle rect : rects) {
-            result = result.union(rect);
+        Bounds bounds = new Bounds().add(0, 0);
+        for (int i = 0, size = rects.size(); i < size; i++) {
+            bounds.add(rects.get(i));
         }
-        return result;
+        return bounds.toRectangle();
     }
 
 }
@@ -0,0 +1,250 @@
+package org.ifml.eclipse.graphiti.layout;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.transaction.RecordingCommand;
+import org.eclipse.emf.transaction.ResourceSetChangeEvent;
+import org.eclipse.emf.transaction.ResourceSetListenerImpl;
+import org.eclipse.emf.transaction.RunnableWithResult;
+import org.eclipse.emf.transaction.TransactionalEditingDomain;
+import org.eclipse.graphiti.features.IFeatureProvider;
+import org.eclipse.graphiti.features.context.impl.LayoutContext;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.ifml.eclipse.core.runtime.Statuses;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
+import org.ifml.eclipse.ui.CommonUi;
+import org.ifml.eclipse.ui.widgets.Displays;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+
+/**
+ * A job arranging the container shapes of one or more diagram subtrees with a layered layout.
+ * <p>
+ * The job takes an immutable snapshot of the subtrees and of the connections between their shapes under a read lock, computes the
+ * layout in the worker thread, bottom-up so that containers grow to fit their arranged children, and finally applies all the
+ * coordinates asynchronously in a single {@link RecordingCommand} executed in the UI thread. The job can be canceled until the
+ * coordinates are applied. If the diagram is modified after the snapshot, the coordinates are discarded rather than overwriting
+ * the newer changes. Passing the diagram as root lays out the whole diagram; passing selected container shapes only arranges
+ * their contents.
+ */
+public final class AutoLayoutJob extends Job {
+
+    private static final Timer COMPUTE_TIMER = Metrics.timer("layout.auto.compute");
+
+    private static final Map<TransactionalEditingDomain, AtomicLong> modificationStamps = new MapMaker().weakKeys().makeMap();
+
+    private final TransactionalEditingDomain domain;
+
+    private final AtomicLong modificationStamp;
+
+    private final List<ContainerShape> roots;
+
+    private IFeatureProvider featureProvider;
+
+    private int nodeSpacing = 20;
+
+    private int layerSpacing = 60;
+
+    private int padding = 10;
+
+    /**
+     * Constructs a new job.
+     * 
+     * @param domain
+     *            the editing domain of the diagram.
+     * @param roots
+     *            the roots of the subtrees to lay out.
+     */
+    public AutoLayoutJob(TransactionalEditingDomain domain, List<? extends ContainerShape> roots) {
+        super("Laying out diagram");
+        this.domain = domain;
+        this.roots = ImmutableList.copyOf(roots);
+        this.modificationStamp = getModificationStamp(domain);
+        setPriority(LONG);
+    }
+
+    private static AtomicLong getModificationStamp(TransactionalEditingDomain domain) {
+        synchronized (modificationStamps) {
+            AtomicLong stamp = modificationStamps.get(domain);
+            if (stamp == null) {
+                stamp = new AtomicLong();
+                domain.addResourceSetListener(new ModificationListener(stamp));
+                modificationStamps.put(domain, stamp);
+            }
+            return stamp;
+        }
+    }
+
+    /**
+     * Sets the feature provider used to lay out the containers resized by the job, so that their decorations follow the new size.
+     * 
+     * @param featureProvider
+     *            the feature provider, or {@code null} not to lay out resized containers.
+     */
+    public void setFeatureProvider(IFeatureProvider featureProvider) {
+        this.featureProvider = featureProvider;
+    }
+
+    /**
+     * Sets the space between two shapes of the same layer or row.
+     * 
+     * @param nodeSpacing
+     *            the spacing.
+     */
+    public void setNodeSpacing(int nodeSpacing) {
+        Preconditions.checkArgument(nodeSpacing >= 0, "Invalid spacing: %s", nodeSpacing);
+        this.nodeSpacing = nodeSpacing;
+    }
+
+    /**
+     * Sets the space between two layers.
+     * 
+     * @param layerSpacing
+     *            the spacing.
+     */
+    public void setLayerSpacing(int layerSpacing) {
+        Preconditions.checkArgument(layerSpacing >= 0, "Invalid spacing: %s", layerSpacing);
+        this.layerSpacing = layerSpacing;
+    }
+
+    /**
+     * Sets the space between a container and its arranged children.
+     * 
+     * @param padding
+     *            the padding.
+     */
+    public void setPadding(int padding) {
+        Preconditions.checkArgument(padding >= 0, "Invalid padding: %s", padding);
+        this.padding = padding;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        SubMonitor progress = SubMonitor.convert(monitor, getName(), IProgressMonitor.UNKNOWN);
+        try {
+            final long[] snapshotStamp = new long[1];
+            LayoutGraph graph = (LayoutGraph) domain.runExclusive(new RunnableWithResult.Impl<LayoutGraph>() {
+                @Override
+                public void run() {
+                    snapshotStamp[0] = modificationStamp.get();
+                    setResult(LayoutGraph.create(roots));
+                }
+            });
+            int size = graph.size();
+            progress.setWorkRemaining(size);
+            long start = Metrics.start();
+            int[] xs = new int[size];
+            int[] ys = new int[size];
+            int[] widths = new int[size];
+            int[] heights = new int[size];
+            int[] containerSize = new int[2];
+            for (int node = 0; node < size; node++) {
+                widths[node] = graph.getWidth(node);
+                heights[node] = graph.getHeight(node);
+            }
+            LayeredLayout layout = new LayeredLayout(nodeSpacing, layerSpacing, padding);
+            for (int node = size - 1; node >= 0; node--) {
+                if (progress.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                layout.layout(graph.getChildren(node), graph.getEdges(node), widths, heights, graph.getTopInset(node), xs, ys,
+                        containerSize);
+                if (!(graph.getShape(node) instanceof Diagram)) {
+                    widths[node] = Math.max(widths[node], containerSize[0]);
+                    heights[node] = Math.max(heights[node], containerSize[1]);
+                }
+                progress.worked(1);
+            }
+            COMPUTE_TIMER.stop(start);
+            if (progress.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            apply(graph, xs, ys, widths, heights, snapshotStamp[0], monitor);
+            return Status.OK_STATUS;
+        } catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        } catch (RuntimeException e) {
+            return Statuses.getErrorStatus(e, null, CommonUi.getDefault().getBundle());
+        } finally {
+            monitor.done();
+        }
+    }
+
+    private void apply(final LayoutGraph graph, final int[] xs, final int[] ys, final int[] widths, final int[] heights,
+            final long snapshotStamp, final IProgressMonitor monitor) {
+        final RecordingCommand command = new RecordingCommand(domain, getName()) {
+            @Override
+            protected void doExecute() {
+                if (modificationStamp.get() != snapshotStamp) {
+                    // the diagram changed since the snapshot: roll back rather than overwrite the newer coordinates
+                    throw new OperationCanceledException();
+                }
+                List<ContainerShape> resizedShapes = Lists.newArrayList();
+                for (int node = 0; node < graph.size(); node++) {
+                    ContainerShape shape = graph.getShape(node);
+                    GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+                    if ((shape.eResource() == null) || (ga == null)) {
+                        continue;
+                    }
+                    if (graph.getParent(node) >= 0) {
+                        ga.setX(xs[node]);
+                        ga.setY(ys[node]);
+                    }
+                    if ((ga.getWidth() != widths[node]) || (ga.getHeight() != heights[node])) {
+                        ga.setWidth(widths[node]);
+                        ga.setHeight(heights[node]);
+                        resizedShapes.add(shape);
+                    }
+                }
+                if (featureProvider != null) {
+                    for (ContainerShape shape : Lists.reverse(resizedShapes)) {
+                        featureProvider.layoutIfPossible(new LayoutContext(shape));
+                    }
+                }
+            }
+        };
+        Displays.getDisplay().asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                if (!monitor.isCanceled() && (modificationStamp.get() == snapshotStamp)) {
+                    domain.getCommandStack().execute(command);
+                }
+            }
+        });
+    }
+
+    private static final class ModificationListener extends ResourceSetListenerImpl {
+
+        private final AtomicLong stamp;
+
+        ModificationListener(AtomicLong stamp) {
+            this.stamp = stamp;
+        }
+
+        @Override
+        public boolean isPostcommitOnly() {
+            return true;
+        }
+
+        @Override
+        public void resourceSetChanged(ResourceSetChangeEvent event) {
+            stamp.incrementAndGet();
+        }
+
+    }
+
+}
@@ -0,0 +1,280 @@
+package org.ifml.eclipse.graphiti.layout;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Arranges the children of a container in layers, following the direction of the edges from left to right.
+ * <p>
+ * The algorithm follows the usual layered (Sugiyama) scheme: cycles are broken by reversing the back edges of a depth-first
+ * search, nodes are assigned to layers by longest path, the order within each layer is improved by a few barycenter sweeps and
+ * coordinates are assigned layer by layer. Nodes without edges are arranged in a grid below the layers.
+ */
+final class LayeredLayout {
+
+    private static final int SWEEPS = 4;
+
+    private final int nodeSpacing;
+
+    private final int layerSpacing;
+
+    private final int padding;
+
+    /**
+     * Constructs a new layout.
+     * 
+     * @param nodeSpacing
+     *            the space between two nodes of the same layer or row.
+     * @param layerSpacing
+     *            the space between two layers.
+     * @param padding
+     *            the space between the container bounds and its children.
+     */
+    LayeredLayout(int nodeSpacing, int layerSpacing, int padding) {
+        this.nodeSpacing = nodeSpacing;
+        this.layerSpacing = layerSpacing;
+        this.padding = padding;
+    }
+
+    /**
+     * Arranges the children of a container.
+     * 
+     * @param nodes
+     *            the child nodes.
+     * @param edges
+     *            the edges between the child nodes, as consecutive pairs of source and target nodes.
+     * @param widths
+     *            the widths of all the nodes.
+     * @param heights
+     *            the heights of all the nodes.
+     * @param top
+     *            the top inset of the container.
+     * @param xs
+     *            the array receiving the x coordinates of the child nodes, relative to the container.
+     * @param ys
+     *            the array receiving the y coordinates of the child nodes, relative to the container.
+     * @param size
+     *            the array receiving the width and height required by the container; both are {@code 0} if there are no children.
+     */
+    void layout(int[] nodes, int[] edges, int[] widths, int[] heights, int top, int[] xs, int[] ys, int[] size) {
+        int n = nodes.length;
+        size[0] = 0;
+        size[1] = 0;
+        if (n == 0) {
+            return;
+        }
+        Map<Integer, Integer> locals = Maps.newHashMap();
+        for (int i = 0; i < n; i++) {
+            locals.put(nodes[i], i);
+        }
+        List<List<Integer>> successors = newAdjacency(n);
+        boolean[] connected = new boolean[n];
+        for (int i = 0; i < edges.length; i += 2) {
+            int source = locals.get(edges[i]);
+            int target = locals.get(edges[i + 1]);
+            successors.get(source).add(target);
+            connected[source] = true;
+            connected[target] = true;
+        }
+        List<List<Integer>> dagSuccessors = removeCycles(successors);
+        List<List<Integer>> dagPredecessors = newAdjacency(n);
+        for (int u = 0; u < n; u++) {
+            for (int v : dagSuccessors.get(u)) {
+                dagPredecessors.get(v).add(u);
+            }
+        }
+        List<List<Integer>> layers = assignLayers(dagSuccessors, dagPredecessors, connected);
+        orderLayers(layers, dagSuccessors, dagPredecessors);
+
+        int left = padding;
+        int maxRight = 0;
+        int maxBottom = 0;
+        int y0 = top + padding;
+        int maxLayerHeight = 0;
+        int[] layerHeights = new int[layers.size()];
+        for (int l = 0; l < layers.size(); l++) {
+            List<Integer> layer = layers.get(l);
+            int height = nodeSpacing * (layer.size() - 1);
+            for (int v : layer) {
+                height += heights[nodes[v]];
+            }
+            layerHeights[l] = height;
+            maxLayerHeight = Math.max(maxLayerHeight, height);
+        }
+        for (int l = 0; l < layers.size(); l++) {
+            List<Integer> layer = layers.get(l);
+            int layerWidth = 0;
+            for (int v : layer) {
+                layerWidth = Math.max(layerWidth, widths[nodes[v]]);
+            }
+            int y = y0 + (maxLayerHeight - layerHeights[l]) / 2;
+            for (int v : layer) {
+                int node = nodes[v];
+                xs[node] = left + (layerWidth - widths[node]) / 2;
+                ys[node] = y;
+                y += heights[node] + nodeSpacing;
+            }
+            maxRight = Math.max(maxRight, left + layerWidth);
+            maxBottom = Math.max(maxBottom, y0 + maxLayerHeight);
+            left += layerWidth + layerSpacing;
+        }
+
+        List<Integer> isolated = Lists.newArrayList();
+        for (int v = 0; v < n; v++) {
+            if (!connected[v]) {
+                isolated.add(v);
+            }
+        }
+        if (!isolated.isEmpty()) {
+            int columns = (int) Math.ceil(Math.sqrt(isolated.size()));
+            int x = padding;
+            int y = layers.isEmpty() ? y0 : maxBottom + layerSpacing;
+            int rowHeight = 0;
+            for (int i = 0; i < isolated.size(); i++) {
+                if ((i > 0) && (i % columns == 0)) {
+                    y += rowHeight + nodeSpacing;
+                    x = padding;
+                    rowHeight = 0;
+                }
+                int node = nodes[isolated.get(i)];
+                xs[node] = x;
+                ys[node] = y;
+                x += widths[node] + nodeSpacing;
+                rowHeight = Math.max(rowHeight, heights[node]);
+                maxRight = Math.max(maxRight, xs[node] + widths[node]);
+                maxBottom = Math.max(maxBottom, y + heights[node]);
+            }
+        }
+        size[0] = maxRight + padding;
+        size[1] = maxBottom + padding;
+    }
+
+    private static List<List<Integer>> newAdjacency(int n) {
+        List<List<Integer>> adjacency = Lists.newArrayListWithCapacity(n);
+        for (int i = 0; i < n; i++) {
+            adjacency.add(Lists.<Integer> newArrayList());
+        }
+        return adjacency;
+    }
+
+    private static List<List<Integer>> removeCycles(List<List<Integer>> successors) {
+        int n = successors.size();
+        List<List<Integer>> dag = newAdjacency(n);
+        int[] state = new int[n]; // 0 = unvisited, 1 = on stack, 2 = done
+        int[] stack = new int[n];
+        int[] next = new int[n];
+        for (int start = 0; start < n; start++) {
+            if (state[start] != 0) {
+                continue;
+            }
+            int depth = 0;
+            stack[depth++] = start;
+            state[start] = 1;
+            while (depth > 0) {
+                int u = stack[depth - 1];
+                List<Integer> out = successors.get(u);
+                if (next[u] < out.size()) {
+                    int v = out.get(next[u]++);
+                    if (state[v] == 1) {
+                        dag.get(v).add(u); // back edge, reversed
+                    } else {
+                        dag.get(u).add(v);
+                        if (state[v] == 0) {
+                            state[v] = 1;
+                            stack[depth++] = v;
+                        }
+                    }
+                } else {
+                    state[u] = 2;
+                    depth--;
+                }
+            }
+        }
+        return dag;
+    }
+
+    private static List<List<Integer>> assignLayers(List<List<Integer>> successors, List<List<Integer>> predecessors,
+            boolean[] connected) {
+        int n = successors.size();
+        int[] layerOf = new int[n];
+        int[] inDegree = new int[n];
+        List<Integer> queue = Lists.newArrayList();
+        for (int v = 0; v < n; v++) {
+            inDegree[v] = predecessors.get(v).size();
+            if (connected[v] && (inDegree[v] == 0)) {
+                queue.add(v);
+            }
+        }
+        int layerCount = 0;
+        for (int i = 0; i < queue.size(); i++) {
+            int u = queue.get(i);
+            layerCount = Math.max(layerCount, layerOf[u] + 1);
+            for (int v : successors.get(u)) {
+                layerOf[v] = Math.max(layerOf[v], layerOf[u] + 1);
+                if (--inDegree[v] == 0) {
+                    queue.add(v);
+                }
+            }
+        }
+        List<List<Integer>> layers = newAdjacency(layerCount);
+        for (int v : queue) {
+            layers.get(layerOf[v]).add(v);
+        }
+        return layers;
+    }
+
+    private static void orderLayers(List<List<Integer>> layers, List<List<Integer>> successors, List<List<Integer>> predecessors) {
+        int n = successors.size();
+        final double[] positions = new double[n];
+        final double[] barycenters = new double[n];
+        updatePositions(layers, positions);
+        Comparator<Integer> byBarycenter = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer v1, Integer v2) {
+                return Double.compare(barycenters[v1], barycenters[v2]);
+            }
+        };
+        for (int sweep = 0; sweep < SWEEPS; sweep++) {
+            for (int l = 1; l < layers.size(); l++) {
+                sortLayer(layers.get(l), predecessors, positions, barycenters, byBarycenter);
+            }
+            for (int l = layers.size() - 2; l >= 0; l--) {
+                sortLayer(layers.get(l), successors, positions, barycenters, byBarycenter);
+            }
+        }
+    }
+
+    private static void sortLayer(List<Integer> layer, List<List<Integer>> neighbors, double[] positions, double[] barycenters,
+            Comparator<Integer> byBarycenter) {
+        for (int v : layer) {
+            List<Integer> adjacent = neighbors.get(v);
+            if (adjacent.isEmpty()) {
+                barycenters[v] = positions[v];
+            } else {
+                double sum = 0;
+                for (int u : adjacent) {
+                    sum += positions[u];
+                }
+                barycenters[v] = sum / adjacent.size();
+            }
+        }
+        Collections.sort(layer, byBarycenter);
+        for (int i = 0; i < layer.size(); i++) {
+            positions[layer.get(i)] = (double) i / Math.max(1, layer.size() - 1);
+        }
+    }
+
+    private static void updatePositions(List<List<Integer>> layers, double[] positions) {
+        for (List<Integer> layer : layers) {
+            for (int i = 0; i < layer.size(); i++) {
+                positions[layer.get(i)] = (double) i / Math.max(1, layer.size() - 1);
+            }
+        }
+    }
+
+}
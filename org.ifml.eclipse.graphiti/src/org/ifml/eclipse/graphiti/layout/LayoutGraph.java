@@ -0,0 +1,245 @@
+package org.ifml.eclipse.graphiti.layout;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.Anchor;
+import org.eclipse.graphiti.mm.pictograms.Connection;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.Shape;
+import org.eclipse.graphiti.services.Graphiti;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+/**
+ * An immutable snapshot of the container shapes and connections of one or more diagram subtrees, which can be laid out outside the
+ * UI thread.
+ * <p>
+ * The nodes of the graph are the roots of the subtrees and the active container shapes below them, indexed in depth-first
+ * pre-order, so that every node has a greater index than its parent. Other shapes, such as labels and separators, are not
+ * arranged: they only determine the top inset of their container. Each connection is lifted to an edge between the two sibling
+ * nodes below the lowest common ancestor of its ends, so that every container can be laid out as a flat graph.
+ */
+final class LayoutGraph {
+
+    private final List<ContainerShape> shapes;
+
+    private final int[] parents;
+
+    private final int[] widths;
+
+    private final int[] heights;
+
+    private final int[] topInsets;
+
+    private final int[][] children;
+
+    private final int[][] edges;
+
+    private LayoutGraph(Builder builder) {
+        int size = builder.shapes.size();
+        this.shapes = ImmutableList.copyOf(builder.shapes);
+        this.parents = Ints.toArray(builder.parents);
+        this.widths = Ints.toArray(builder.widths);
+        this.heights = Ints.toArray(builder.heights);
+        this.topInsets = Ints.toArray(builder.topInsets);
+        this.children = new int[size][];
+        this.edges = new int[size][];
+        for (int i = 0; i < size; i++) {
+            children[i] = Ints.toArray(builder.children.get(i));
+            edges[i] = Ints.toArray(builder.edges.get(i));
+        }
+    }
+
+    /**
+     * Takes a snapshot of diagram subtrees. This method must be invoked with read access to the model.
+     * 
+     * @param roots
+     *            the roots of the subtrees, which can include the diagram itself.
+     * @return the graph.
+     */
+    static LayoutGraph create(List<? extends ContainerShape> roots) {
+        Builder builder = new Builder();
+        Set<Diagram> diagrams = Sets.newLinkedHashSet();
+        for (ContainerShape root : roots) {
+            if (!builder.indexes.containsKey(root) && !isNested(root, roots)) {
+                builder.add(root, -1);
+            }
+            Diagram diagram = (root instanceof Diagram) ? (Diagram) root : Graphiti.getPeService().getDiagramForShape(root);
+            if (diagram != null) {
+                diagrams.add(diagram);
+            }
+        }
+        for (Diagram diagram : diagrams) {
+            for (Connection connection : diagram.getConnections()) {
+                builder.add(connection);
+            }
+        }
+        return new LayoutGraph(builder);
+    }
+
+    private static boolean isNested(ContainerShape root, List<? extends ContainerShape> roots) {
+        for (EObject ancestor = root.eContainer(); ancestor != null; ancestor = ancestor.eContainer()) {
+            if (roots.contains(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int size() {
+        return shapes.size();
+    }
+
+    ContainerShape getShape(int node) {
+        return shapes.get(node);
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    int getWidth(int node) {
+        return widths[node];
+    }
+
+    int getHeight(int node) {
+        return heights[node];
+    }
+
+    int getTopInset(int node) {
+        return topInsets[node];
+    }
+
+    /**
+     * Returns the children of a node. The returned array must not be modified.
+     * 
+     * @param node
+     *            the node.
+     * @return the child nodes.
+     */
+    int[] getChildren(int node) {
+        return children[node];
+    }
+
+    /**
+     * Returns the edges between the children of a node, as consecutive pairs of source and target nodes. The returned array must
+     * not be modified.
+     * 
+     * @param node
+     *            the node.
+     * @return the edges.
+     */
+    int[] getEdges(int node) {
+        return edges[node];
+    }
+
+    private static final class Builder {
+
+        private final List<ContainerShape> shapes = Lists.newArrayList();
+
+        private final Map<EObject, Integer> indexes = Maps.newHashMap();
+
+        private final List<Integer> parents = Lists.newArrayList();
+
+        private final List<Integer> widths = Lists.newArrayList();
+
+        private final List<Integer> heights = Lists.newArrayList();
+
+        private final List<Integer> topInsets = Lists.newArrayList();
+
+        private final List<List<Integer>> children = Lists.newArrayList();
+
+        private final List<List<Integer>> edges = Lists.newArrayList();
+
+        private final Set<Long> edgeKeys = Sets.newHashSet();
+
+        void add(ContainerShape shape, int parent) {
+            int node = shapes.size();
+            GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
+            shapes.add(shape);
+            indexes.put(shape, node);
+            parents.add(parent);
+            widths.add((ga != null) ? ga.getWidth() : 0);
+            heights.add((ga != null) ? ga.getHeight() : 0);
+            topInsets.add(0);
+            children.add(Lists.<Integer> newArrayList());
+            edges.add(Lists.<Integer> newArrayList());
+            if (parent >= 0) {
+                children.get(parent).add(node);
+            }
+            int topInset = 0;
+            for (Shape child : shape.getChildren()) {
+                GraphicsAlgorithm childGa = child.getGraphicsAlgorithm();
+                if (childGa == null) {
+                    continue;
+                }
+                if ((child instanceof ContainerShape) && child.isActive()) {
+                    add((ContainerShape) child, node);
+                } else {
+                    topInset = Math.max(topInset, childGa.getY() + childGa.getHeight());
+                }
+            }
+            topInsets.set(node, topInset);
+        }
+
+        void add(Connection connection) {
+            int source = getNode(connection.getStart());
+            int target = getNode(connection.getEnd());
+            if ((source < 0) || (target < 0) || (source == target)) {
+                return;
+            }
+            List<Integer> sourcePath = getPath(source);
+            List<Integer> targetPath = getPath(target);
+            if (!sourcePath.get(0).equals(targetPath.get(0))) {
+                return; // different subtrees
+            }
+            int common = 0;
+            while ((common < sourcePath.size()) && (common < targetPath.size())
+                    && sourcePath.get(common).equals(targetPath.get(common))) {
+                common++;
+            }
+            if ((common == sourcePath.size()) || (common == targetPath.size())) {
+                return; // connection between a container and one of its descendants
+            }
+            int liftedSource = sourcePath.get(common);
+            int liftedTarget = targetPath.get(common);
+            if (edgeKeys.add(((long) liftedSource << 32) | liftedTarget)) {
+                List<Integer> containerEdges = edges.get(sourcePath.get(common - 1));
+                containerEdges.add(liftedSource);
+                containerEdges.add(liftedTarget);
+            }
+        }
+
+        private int getNode(Anchor anchor) {
+            if (anchor == null) {
+                return -1;
+            }
+            for (EObject obj = anchor.getParent(); obj != null; obj = obj.eContainer()) {
+                Integer node = indexes.get(obj);
+                if (node != null) {
+                    return node;
+                }
+            }
+            return -1;
+        }
+
+        private List<Integer> getPath(int node) {
+            List<Integer> path = Lists.newArrayList();
+            for (int n = node; n >= 0; n = parents.get(n)) {
+                path.add(n);
+            }
+            return Lists.reverse(path);
+        }
+
+    }
+
+}
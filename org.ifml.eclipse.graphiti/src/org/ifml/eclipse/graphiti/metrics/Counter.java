@@ -0,0 +1,51 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonic counter.
+ * <p>
+ * Updates are ignored when {@link Metrics#isEnabled() metrics are disabled}.
+ */
+public final class Counter {
+
+    private final AtomicLong value = new AtomicLong();
+
+    Counter() {
+    }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        if (Metrics.isEnabled()) {
+            value.incrementAndGet();
+        }
+    }
+
+    /**
+     * Increments the counter.
+     * 
+     * @param delta
+     *            the increment.
+     */
+    public void add(long delta) {
+        if (Metrics.isEnabled()) {
+            value.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Returns the current value of the counter.
+     * 
+     * @return the value.
+     */
+    public long get() {
+        return value.get();
+    }
+
+    void reset() {
+        value.set(0);
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.ifml.eclipse.ui.CommonUi;
+
+/**
+ * A command handler writing a dump of the {@link Metrics} to the platform log.
+ */
+public final class DumpMetricsHandler extends AbstractHandler {
+
+    @Override
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        CommonUi.getDefault().getLog().log(new Status(IStatus.INFO, CommonUi.ID, Metrics.dump()));
+        return null;
+    }
+
+}
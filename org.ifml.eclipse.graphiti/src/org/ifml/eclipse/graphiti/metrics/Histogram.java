@@ -0,0 +1,118 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A distribution of non-negative values, recorded into power-of-two buckets.
+ * <p>
+ * The bucket {@code i} holds the values in the range [2<sup>i-1</sup>, 2<sup>i</sup>), whereas the bucket {@code 0} holds zeros, so
+ * that percentiles are estimated within a factor of two at a constant memory cost. Updates are ignored when
+ * {@link Metrics#isEnabled() metrics are disabled}.
+ */
+public final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sum = new AtomicLong();
+
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() {
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zeros.
+     * 
+     * @param value
+     *            the value.
+     */
+    public void record(long value) {
+        if (!Metrics.isEnabled()) {
+            return;
+        }
+        value = Math.max(0, value);
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while ((value > currentMax) && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return the sum.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the maximum recorded value.
+     * 
+     * @return the maximum value.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of a percentile of the recorded values.
+     * 
+     * @param percentile
+     *            the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile.
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return Math.min(max.get(), (i == 0) ? 0 : (1L << i) - 1);
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns a summary of the distribution.
+     * 
+     * @return the summary.
+     */
+    public String getSummary() {
+        long total = count.get();
+        return "count=" + total + " mean=" + ((total > 0) ? sum.get() / total : 0) + " p50<=" + getPercentile(50) + " p99<="
+                + getPercentile(99) + " max=" + max.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.ifml.eclipse.ui.CommonUi;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+/**
+ * A registry of counters, histograms and timers measuring the Graphiti layer.
+ * <p>
+ * Metrics are recorded only if the {@value #ENABLED_PROPERTY} system property is {@code true}; otherwise every update returns
+ * immediately. When enabled, the metrics are exposed through JMX under the {@value #OBJECT_NAME} name.
+ */
+public final class Metrics {
+
+    /** The system property enabling metrics. */
+    public static final String ENABLED_PROPERTY = "org.ifml.eclipse.graphiti.metrics";
+
+    /** The JMX object name of the metrics. */
+    public static final String OBJECT_NAME = "org.ifml.eclipse.graphiti:type=Metrics";
+
+    private static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final ConcurrentMap<String, Counter> counters = Maps.newConcurrentMap();
+
+    private static final ConcurrentMap<String, Histogram> histograms = Maps.newConcurrentMap();
+
+    private static final ConcurrentMap<String, Timer> timers = Maps.newConcurrentMap();
+
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns whether metrics are being recorded.
+     * 
+     * @return {@code true} if metrics are enabled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the start time of an operation to be measured by a {@link Timer}.
+     * 
+     * @return the current time in nanoseconds, or {@code 0} if metrics are disabled.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Returns the counter having a specific name, creating it if needed.
+     * 
+     * @param name
+     *            the counter name.
+     * @return the counter.
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counters.putIfAbsent(name, new Counter());
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the histogram having a specific name, creating it if needed.
+     * 
+     * @param name
+     *            the histogram name.
+     * @return the histogram.
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histograms.putIfAbsent(name, new Histogram());
+            histogram = histograms.get(name);
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the timer having a specific name, creating it if needed.
+     * 
+     * @param name
+     *            the timer name.
+     * @return the timer.
+     */
+    public static Timer timer(String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timers.putIfAbsent(name, new Timer());
+            timer = timers.get(name);
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the values of all the counters.
+     * 
+     * @return the sorted map from counter names to values.
+     */
+    public static SortedMap<String, Long> getCounters() {
+        ImmutableSortedMap.Builder<String, Long> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().get());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a summary of all the histograms and timers; timers are measured in microseconds.
+     * 
+     * @return the sorted map from histogram names to summaries.
+     */
+    public static SortedMap<String, String> getHistograms() {
+        ImmutableSortedMap.Builder<String, String> builder = ImmutableSortedMap.naturalOrder();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().getSummary());
+        }
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue().getHistogram().getSummary() + " (us)");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a textual dump of all the metrics, one per line.
+     * 
+     * @return the dump.
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Graphiti metrics").append(ENABLED ? "" : " (disabled)").append('\n');
+        for (Map.Entry<String, Long> entry : getCounters().entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, String> entry : getHistograms().entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Resets all the metrics.
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBeanImpl(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            CommonUi.getDefault().getLog().log(new Status(IStatus.WARNING, CommonUi.ID, "Unable to register " + OBJECT_NAME, e));
+        }
+    }
+
+    private static final class MetricsMXBeanImpl implements MetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            return Metrics.getCounters();
+        }
+
+        @Override
+        public Map<String, String> getHistograms() {
+            return Metrics.getHistograms();
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface exposing the {@link Metrics} through JMX.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns whether metrics are being recorded.
+     * 
+     * @return {@code true} if metrics are enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the values of all the counters.
+     * 
+     * @return the map from counter names to values.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns a summary of all the histograms and timers; timers are measured in microseconds.
+     * 
+     * @return the map from histogram names to summaries.
+     */
+    Map<String, String> getHistograms();
+
+    /**
+     * Returns a textual dump of all the metrics.
+     * 
+     * @return the dump.
+     */
+    String dump();
+
+    /**
+     * Resets all the metrics.
+     */
+    void reset();
+
+}
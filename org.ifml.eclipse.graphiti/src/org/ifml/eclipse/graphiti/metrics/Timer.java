@@ -0,0 +1,49 @@
+package org.ifml.eclipse.graphiti.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of an operation into a {@link Histogram} of microseconds.
+ * 
+ * <pre>
+ * long start = Metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     TIMER.stop(start);
+ * }
+ * </pre>
+ */
+public final class Timer {
+
+    private final Histogram histogram = new Histogram();
+
+    Timer() {
+    }
+
+    /**
+     * Records the time elapsed since a start time returned by {@link Metrics#start()}.
+     * 
+     * @param start
+     *            the start time.
+     */
+    public void stop(long start) {
+        if (Metrics.isEnabled()) {
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Returns the distribution of the recorded latencies, in microseconds.
+     * 
+     * @return the histogram.
+     */
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    void reset() {
+        histogram.reset();
+    }
+
+}
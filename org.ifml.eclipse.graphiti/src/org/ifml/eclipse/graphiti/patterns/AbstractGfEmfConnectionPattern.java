@@ -1,6 +1,7 @@
 package org.ifml.eclipse.graphiti.patterns;
 
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
@@ -15,9 +16,17 @@ import org.eclipse.graphiti.mm.pictograms.PictogramElement;
 import org.eclipse.graphiti.pattern.AbstractConnectionPattern;
 import org.ifml.base.Objects2;
 import org.ifml.base.WordFormat;
+import org.ifml.eclipse.graphiti.metrics.Histogram;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * An abstract base class for Graphiti connection patterns based on EMF models.
@@ -27,6 +36,10 @@ import com.google.common.base.Preconditions;
  */
 public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends AbstractConnectionPattern {
 
+    private static final Timer CREATE_TIMER = Metrics.timer("patterns.connection.create");
+
+    private static final Histogram CREATE_BATCH_SIZE = Metrics.histogram("patterns.connection.create.batchSize");
+
     private final Class<T> instanceClass;
 
     /**
@@ -57,7 +70,7 @@ public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends
 
     @Override
     public final boolean canStartConnection(ICreateConnectionContext context) {
-        EObject sourceObject = Objects2.as(getBusinessObjectForPictogramElement(context.getSourcePictogramElement()), EObject.class);
+        EObject sourceObject = Objects2.as(resolveBusinessObject(context.getSourcePictogramElement()), EObject.class);
         if (sourceObject == null) {
             return false;
         }
@@ -76,8 +89,8 @@ public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends
 
     @Override
     public final boolean canCreate(ICreateConnectionContext context) {
-        EObject sourceObject = Objects2.as(getBusinessObjectForPictogramElement(context.getSourcePictogramElement()), EObject.class);
-        EObject targetObject = Objects2.as(getBusinessObjectForPictogramElement(context.getTargetPictogramElement()), EObject.class);
+        EObject sourceObject = Objects2.as(resolveBusinessObject(context.getSourcePictogramElement()), EObject.class);
+        EObject targetObject = Objects2.as(resolveBusinessObject(context.getTargetPictogramElement()), EObject.class);
         if ((sourceObject == null) || (targetObject == null)) {
             return false;
         }
@@ -101,6 +114,7 @@ public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends
         PictogramElement pictogramElement = addPictogramElement((IAddConnectionContext) context);
         Object addedDomainObject = context.getNewObject();
         link(pictogramElement, addedDomainObject);
+        ResolutionScope.evict(pictogramElement);
         return pictogramElement;
     }
 
@@ -120,40 +134,113 @@ public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends
 
     @Override
     public final Connection create(ICreateConnectionContext context) {
-        EObject newObject = EcoreUtil.create(getEClass());
-        EObject sourceObject = Objects2.as(getBusinessObjectForPictogramElement(context.getSourcePictogramElement()), EObject.class);
-        EObject targetObject = Objects2.as(getBusinessObjectForPictogramElement(context.getTargetPictogramElement()), EObject.class);
-        Optional<EReference> connRef = getConnectionReference(sourceObject.eClass());
-        Preconditions.checkState(connRef.isPresent(), "No connection reference specified for %s (source = %s)", getEClass().getName(),
-                sourceObject.eClass().getName());
-        if (connRef.get().isMany()) {
-            @SuppressWarnings("unchecked")
-            List<Object> list = (List<Object>) sourceObject.eGet(connRef.get());
-            list.add(newObject);
-        } else {
-            sourceObject.eSet(connRef.get(), newObject);
+        long start = Metrics.start();
+        ResolutionScope scope = ResolutionScope.open();
+        try {
+            return createConnections(ImmutableList.of(context), false).get(0);
+        } finally {
+            scope.close();
+            CREATE_TIMER.stop(start);
+            CREATE_BATCH_SIZE.record(1);
         }
+    }
 
-        Optional<EReference> inverseConnRef = getInverseConnectionReference(targetObject.eClass());
-        if (inverseConnRef.isPresent()) {
-            if (inverseConnRef.get().isMany()) {
-                @SuppressWarnings("unchecked")
-                List<Object> list = (List<Object>) targetObject.eGet(inverseConnRef.get());
-                list.add(newObject);
-            } else {
-                targetObject.eSet(inverseConnRef.get(), newObject);
-            }
+    /**
+     * Creates many connections at once, typically when importing a model.
+     * <p>
+     * The connection references are resolved once per source and target class, the new model objects are added to the many-valued
+     * references of their source and target objects in bulk, and the new connections are added directly by this pattern when it
+     * accepts them, instead of being routed through the feature provider like the connection created by
+     * {@link #create(ICreateConnectionContext)}. This method must be invoked within a write transaction, like
+     * {@link #create(ICreateConnectionContext)}.
+     * 
+     * @param contexts
+     *            the create contexts, holding the source and target of each connection.
+     * @return the list of new connections, in the same order as {@code contexts}.
+     */
+    public final List<Connection> createAll(List<? extends ICreateConnectionContext> contexts) {
+        long start = Metrics.start();
+        ResolutionScope scope = ResolutionScope.open();
+        try {
+            return createConnections(contexts, true);
+        } finally {
+            scope.close();
+            CREATE_TIMER.stop(start);
+            CREATE_BATCH_SIZE.record(contexts.size());
         }
+    }
+
+    private List<Connection> createConnections(List<? extends ICreateConnectionContext> contexts, boolean directAdd) {
         Optional<EReference> sourceRef = getSourceReference();
         Preconditions.checkState(sourceRef.isPresent(), "No source attribute reference specified for %s", getEClass());
-        newObject.eSet(sourceRef.get(), sourceObject);
         Optional<EReference> targetRef = getTargetReference();
         Preconditions.checkState(targetRef.isPresent(), "No target attribute reference specified for %s", getEClass());
-        newObject.eSet(targetRef.get(), targetObject);
-        AddConnectionContext addContext = new AddConnectionContext(context.getSourceAnchor(), context.getTargetAnchor());
-        addContext.setNewObject(newObject);
-        Connection newConnection = (Connection) getFeatureProvider().addIfPossible(addContext);
-        return newConnection;
+        Map<EClass, Optional<EReference>> connRefs = Maps.newHashMap();
+        Map<EClass, Optional<EReference>> inverseConnRefs = Maps.newHashMap();
+        Map<EObject, ListMultimap<EReference, EObject>> manyValues = Maps.newLinkedHashMap();
+        List<EObject> newObjects = Lists.newArrayListWithCapacity(contexts.size());
+        List<EObject> sourceObjects = Lists.newArrayListWithCapacity(contexts.size());
+        List<EObject> targetObjects = Lists.newArrayListWithCapacity(contexts.size());
+        for (ICreateConnectionContext context : contexts) {
+            EObject sourceObject = Objects2.as(resolveBusinessObject(context.getSourcePictogramElement()), EObject.class);
+            EObject targetObject = Objects2.as(resolveBusinessObject(context.getTargetPictogramElement()), EObject.class);
+            Optional<EReference> connRef = connRefs.get(sourceObject.eClass());
+            if (connRef == null) {
+                connRef = getConnectionReference(sourceObject.eClass());
+                Preconditions.checkState(connRef.isPresent(), "No connection reference specified for %s (source = %s)", getEClass()
+                        .getName(), sourceObject.eClass().getName());
+                connRefs.put(sourceObject.eClass(), connRef);
+            }
+            Optional<EReference> inverseConnRef = inverseConnRefs.get(targetObject.eClass());
+            if (inverseConnRef == null) {
+                inverseConnRef = getInverseConnectionReference(targetObject.eClass());
+                inverseConnRefs.put(targetObject.eClass(), inverseConnRef);
+            }
+            EObject newObject = EcoreUtil.create(getEClass());
+            setOrCollect(sourceObject, connRef.get(), newObject, manyValues);
+            if (inverseConnRef.isPresent()) {
+                setOrCollect(targetObject, inverseConnRef.get(), newObject, manyValues);
+            }
+            newObjects.add(newObject);
+            sourceObjects.add(sourceObject);
+            targetObjects.add(targetObject);
+        }
+        for (Map.Entry<EObject, ListMultimap<EReference, EObject>> entry : manyValues.entrySet()) {
+            for (EReference ref : entry.getValue().keySet()) {
+                @SuppressWarnings("unchecked")
+                List<Object> list = (List<Object>) entry.getKey().eGet(ref);
+                list.addAll(entry.getValue().get(ref));
+            }
+        }
+        List<Connection> newConnections = Lists.newArrayListWithCapacity(contexts.size());
+        for (int i = 0; i < contexts.size(); i++) {
+            ICreateConnectionContext context = contexts.get(i);
+            EObject newObject = newObjects.get(i);
+            newObject.eSet(sourceRef.get(), sourceObjects.get(i));
+            newObject.eSet(targetRef.get(), targetObjects.get(i));
+            AddConnectionContext addContext = new AddConnectionContext(context.getSourceAnchor(), context.getTargetAnchor());
+            addContext.setNewObject(newObject);
+            if (directAdd && canAdd(addContext)) {
+                newConnections.add((Connection) add(addContext));
+            } else {
+                newConnections.add((Connection) getFeatureProvider().addIfPossible(addContext));
+            }
+        }
+        return newConnections;
+    }
+
+    private static void setOrCollect(EObject owner, EReference ref, EObject value,
+            Map<EObject, ListMultimap<EReference, EObject>> manyValues) {
+        if (ref.isMany()) {
+            ListMultimap<EReference, EObject> values = manyValues.get(owner);
+            if (values == null) {
+                values = ArrayListMultimap.create();
+                manyValues.put(owner, values);
+            }
+            values.put(ref, value);
+        } else {
+            owner.eSet(ref, value);
+        }
     }
 
     /**
@@ -190,4 +277,15 @@ public abstract class AbstractGfEmfConnectionPattern<T extends EObject> extends
      */
     protected abstract Optional<EReference> getTargetReference();
 
+    /**
+     * Returns the business object linked to a pictogram element, memoized by the current {@link ResolutionScope}, if any.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @return the business object or {@code null} if the element is not linked.
+     */
+    protected final Object resolveBusinessObject(PictogramElement pictogramElement) {
+        return ResolutionScope.resolve(pictogramElement, getFeatureProvider());
+    }
+
 }
@@ -0,0 +1,149 @@
+package org.ifml.eclipse.graphiti.patterns;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.graphiti.dt.IDiagramTypeProvider;
+import org.eclipse.graphiti.features.IAddFeature;
+import org.eclipse.graphiti.features.ILayoutFeature;
+import org.eclipse.graphiti.features.context.IAddConnectionContext;
+import org.eclipse.graphiti.features.context.IAddContext;
+import org.eclipse.graphiti.features.context.ILayoutContext;
+import org.eclipse.graphiti.pattern.AddFeatureForConnectionPattern;
+import org.eclipse.graphiti.pattern.AddFeatureForPattern;
+import org.eclipse.graphiti.pattern.DefaultFeatureProviderWithPatterns;
+import org.eclipse.graphiti.pattern.IConnectionPattern;
+import org.eclipse.graphiti.pattern.IFeatureProviderWithPatterns;
+import org.eclipse.graphiti.pattern.IPattern;
+import org.eclipse.graphiti.pattern.LayoutFeatureForPattern;
+import org.ifml.base.Objects2;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
+
+/**
+ * An abstract base class for Graphiti feature providers whose patterns are based on EMF models.
+ * <p>
+ * Shape and connection patterns extending {@link AbstractGfEmfShapePattern} and {@link AbstractGfEmfConnectionPattern} are recorded
+ * in a {@link PatternRegistry}, so that add and layout features are resolved from the class of the business object instead of
+ * asking every registered pattern in turn. A registered pattern is returned only if it accepts the context; when all the patterns
+ * registered for the class decline, the features are resolved by the default implementation, as are the features of other
+ * patterns.
+ * <p>
+ * Add feature lookups and layout passes of the patterns based on EMF models run within a {@link ResolutionScope}.
+ */
+public abstract class AbstractGfEmfFeatureProvider extends DefaultFeatureProviderWithPatterns {
+
+    private final PatternRegistry patternRegistry = new PatternRegistry();
+
+    private boolean unkeyedPatterns;
+
+    /**
+     * Constructs a new feature provider.
+     * 
+     * @param dtp
+     *            the diagram type provider.
+     */
+    public AbstractGfEmfFeatureProvider(IDiagramTypeProvider dtp) {
+        super(dtp);
+    }
+
+    /**
+     * Returns the registry of the patterns based on EMF models.
+     * 
+     * @return the pattern registry.
+     */
+    public final PatternRegistry getPatternRegistry() {
+        return patternRegistry;
+    }
+
+    @Override
+    public void addPattern(IPattern pattern) {
+        super.addPattern(pattern);
+        if (pattern instanceof AbstractGfEmfShapePattern<?>) {
+            patternRegistry.register((AbstractGfEmfShapePattern<?>) pattern);
+        } else {
+            unkeyedPatterns = true;
+        }
+    }
+
+    @Override
+    public void addConnectionPattern(IConnectionPattern pattern) {
+        super.addConnectionPattern(pattern);
+        if (pattern instanceof AbstractGfEmfConnectionPattern<?>) {
+            patternRegistry.register((AbstractGfEmfConnectionPattern<?>) pattern);
+        } else {
+            unkeyedPatterns = true;
+        }
+    }
+
+    @Override
+    public IAddFeature getAddFeature(IAddContext context) {
+        EObject newObject = Objects2.as(context.getNewObject(), EObject.class);
+        boolean declined = false;
+        if (newObject != null) {
+            ResolutionScope scope = ResolutionScope.open();
+            try {
+                if (context instanceof IAddConnectionContext) {
+                    for (AbstractGfEmfConnectionPattern<?> pattern : patternRegistry.getConnectionPatterns(newObject.eClass())) {
+                        if (pattern.canAdd(context)) {
+                            return new AddFeatureForConnectionPattern(this, pattern);
+                        }
+                        declined = true;
+                    }
+                } else {
+                    for (AbstractGfEmfShapePattern<?> pattern : patternRegistry.getShapePatterns(newObject.eClass())) {
+                        if (pattern.canAdd(context)) {
+                            return new AddFeatureForPattern(this, pattern);
+                        }
+                        declined = true;
+                    }
+                }
+            } finally {
+                scope.close();
+            }
+        }
+        return (declined || unkeyedPatterns) ? super.getAddFeature(context) : getAddFeatureAdditional(context);
+    }
+
+    @Override
+    public ILayoutFeature getLayoutFeature(ILayoutContext context) {
+        boolean declined = false;
+        ResolutionScope scope = ResolutionScope.open();
+        try {
+            EObject businessObject = Objects2.as(ResolutionScope.resolve(context.getPictogramElement(), this), EObject.class);
+            if (businessObject != null) {
+                for (AbstractGfEmfShapePattern<?> pattern : patternRegistry.getShapePatterns(businessObject.eClass())) {
+                    ILayoutFeature feature = new ScopedLayoutFeature(this, pattern);
+                    if (feature.canLayout(context)) {
+                        return feature;
+                    }
+                    declined = true;
+                }
+            }
+        } finally {
+            scope.close();
+        }
+        return (declined || unkeyedPatterns) ? super.getLayoutFeature(context) : getLayoutFeatureAdditional(context);
+    }
+
+    private static final class ScopedLayoutFeature extends LayoutFeatureForPattern {
+
+        private static final Timer LAYOUT_TIMER = Metrics.timer("patterns.shape.layout");
+
+        ScopedLayoutFeature(IFeatureProviderWithPatterns featureProvider, IPattern pattern) {
+            super(featureProvider, pattern);
+        }
+
+        @Override
+        public boolean layout(ILayoutContext context) {
+            long start = Metrics.start();
+            ResolutionScope scope = ResolutionScope.open();
+            try {
+                return super.layout(context);
+            } finally {
+                scope.close();
+                LAYOUT_TIMER.stop(start);
+            }
+        }
+
+    }
+
+}
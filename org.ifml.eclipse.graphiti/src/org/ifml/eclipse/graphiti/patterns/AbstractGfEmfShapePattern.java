@@ -8,7 +8,8 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.graphiti.datatypes.IDimension;
+import org.eclipse.emf.transaction.TransactionalEditingDomain;
+import org.eclipse.emf.transaction.util.TransactionUtil;
 import org.eclipse.graphiti.features.context.IAddContext;
 import org.eclipse.graphiti.features.context.ICreateContext;
 import org.eclipse.graphiti.features.context.ILayoutContext;
@@ -17,9 +18,15 @@ import org.eclipse.graphiti.mm.algorithms.Text;
 import org.eclipse.graphiti.mm.pictograms.ContainerShape;
 import org.eclipse.graphiti.mm.pictograms.PictogramElement;
 import org.eclipse.graphiti.pattern.AbstractPattern;
-import org.eclipse.graphiti.ui.services.GraphitiUi;
 import org.ifml.base.Objects2;
 import org.ifml.base.WordFormat;
+import org.ifml.eclipse.graphiti.diagrams.DiagramLinkIndex;
+import org.ifml.eclipse.graphiti.diagrams.DiagramSpatialIndex;
+import org.ifml.eclipse.graphiti.features.LayoutScheduler;
+import org.ifml.eclipse.graphiti.geometry.Bounds;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+import org.ifml.eclipse.graphiti.metrics.Timer;
+import org.ifml.eclipse.graphiti.services.TextSizeCache;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
@@ -35,6 +42,10 @@ import com.google.common.collect.Lists;
  */
 public abstract class AbstractGfEmfShapePattern<T extends EObject> extends AbstractPattern {
 
+    private static final Timer CREATE_TIMER = Metrics.timer("patterns.shape.create");
+
+    private static final Timer ADD_TIMER = Metrics.timer("patterns.shape.add");
+
     private final Class<T> instanceClass;
 
     /**
@@ -67,7 +78,7 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
     public final boolean canAdd(IAddContext context) {
         if (isMainBusinessObjectApplicable(context.getNewObject())) {
             PictogramElement targetElem = Objects.firstNonNull(context.getTargetContainer(), context.getTargetConnection());
-            EObject parentObject = Objects2.as(getBusinessObjectForPictogramElement(targetElem), EObject.class);
+            EObject parentObject = Objects2.as(resolveBusinessObject(targetElem), EObject.class);
             return canAddTo(parentObject);
         }
         return false;
@@ -76,7 +87,7 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
     @Override
     public final boolean canCreate(ICreateContext context) {
         PictogramElement targetElem = Objects.firstNonNull(context.getTargetContainer(), context.getTargetConnection());
-        EObject parentObject = Objects2.as(getBusinessObjectForPictogramElement(targetElem), EObject.class);
+        EObject parentObject = Objects2.as(resolveBusinessObject(targetElem), EObject.class);
         return canAddTo(parentObject);
     }
 
@@ -92,22 +103,29 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
 
     @Override
     public final Object[] create(ICreateContext context) {
-        EObject newObject = EcoreUtil.create(getEClass());
-        EObject parentObject = (EObject) getBusinessObjectForPictogramElement(Objects.firstNonNull(context.getTargetContainer(),
-                context.getTargetConnection()));
-        Optional<EReference> containmentReference = getContainmentReference(parentObject, newObject);
-        Preconditions.checkState(containmentReference.isPresent(), "No containment reference specified for %s (parent = %s)",
-                getEClass().getName(), parentObject.eClass().getName());
-        if (containmentReference.get().isMany()) {
-            @SuppressWarnings("unchecked")
-            List<Object> list = (List<Object>) parentObject.eGet(containmentReference.get());
-            list.add(newObject);
-        } else {
-            parentObject.eSet(containmentReference.get(), newObject);
+        long start = Metrics.start();
+        ResolutionScope scope = ResolutionScope.open();
+        try {
+            EObject newObject = EcoreUtil.create(getEClass());
+            EObject parentObject = (EObject) resolveBusinessObject(Objects.firstNonNull(context.getTargetContainer(),
+                    context.getTargetConnection()));
+            Optional<EReference> containmentReference = getContainmentReference(parentObject, newObject);
+            Preconditions.checkState(containmentReference.isPresent(), "No containment reference specified for %s (parent = %s)",
+                    getEClass().getName(), parentObject.eClass().getName());
+            if (containmentReference.get().isMany()) {
+                @SuppressWarnings("unchecked")
+                List<Object> list = (List<Object>) parentObject.eGet(containmentReference.get());
+                list.add(newObject);
+            } else {
+                parentObject.eSet(containmentReference.get(), newObject);
+            }
+            postCreate(newObject);
+            addGraphicalRepresentation(context, newObject);
+            return new Object[] { newObject };
+        } finally {
+            scope.close();
+            CREATE_TIMER.stop(start);
         }
-        postCreate(newObject);
-        addGraphicalRepresentation(context, newObject);
-        return new Object[] { newObject };
     }
 
     /**
@@ -124,13 +142,44 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
 
     @Override
     public final PictogramElement add(IAddContext context) {
-        List<PictogramElement> pictogramElements = addPictogramElements(context);
-        Object addedDomainObject = context.getNewObject();
-        for (PictogramElement pictogramElement : pictogramElements) {
-            link(pictogramElement, addedDomainObject);
-            layoutPictogramElement(pictogramElement);
+        long start = Metrics.start();
+        ResolutionScope scope = ResolutionScope.open();
+        try {
+            List<PictogramElement> pictogramElements = addPictogramElements(context);
+            Object addedDomainObject = context.getNewObject();
+            for (PictogramElement pictogramElement : pictogramElements) {
+                link(pictogramElement, addedDomainObject);
+                ResolutionScope.evict(pictogramElement);
+                layoutPictogramElement(pictogramElement);
+            }
+            return pictogramElements.get(0);
+        } finally {
+            scope.close();
+            ADD_TIMER.stop(start);
+        }
+    }
+
+    /**
+     * Lays out a pictogram element.
+     * <p>
+     * If a {@link LayoutBatch} is open on the current thread, the layout is deferred until the batch is closed. Otherwise, if the
+     * current thread is running a write transaction with triggers on the editing domain of the element, the layout is deferred to
+     * the {@link LayoutScheduler} of the domain, which lays out the element once before the transaction commits.
+     * 
+     * @param pe
+     *            the pictogram element.
+     */
+    @Override
+    protected void layoutPictogramElement(PictogramElement pe) {
+        if (LayoutBatch.defer(pe, getFeatureProvider())) {
+            return;
+        }
+        TransactionalEditingDomain domain = TransactionUtil.getEditingDomain(pe);
+        if ((domain != null) && LayoutScheduler.canDefer(domain)) {
+            LayoutScheduler.get(domain).markDirty(pe, getFeatureProvider());
+        } else {
+            super.layoutPictogramElement(pe);
         }
-        return pictogramElements.get(0);
     }
 
     /**
@@ -174,16 +223,45 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
 
     @Override
     protected final boolean isPatternControlled(PictogramElement pictogramElement) {
-        Object domainObject = getBusinessObjectForPictogramElement(pictogramElement);
+        Object domainObject = resolveBusinessObject(pictogramElement);
         return isMainBusinessObjectApplicable(domainObject);
     }
 
     @Override
     protected final boolean isPatternRoot(PictogramElement pictogramElement) {
-        Object domainObject = getBusinessObjectForPictogramElement(pictogramElement);
+        Object domainObject = resolveBusinessObject(pictogramElement);
         return isMainBusinessObjectApplicable(domainObject);
     }
 
+    /**
+     * Returns the business object linked to a pictogram element, memoized by the current {@link ResolutionScope}, if any.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @return the business object or {@code null} if the element is not linked.
+     */
+    protected final Object resolveBusinessObject(PictogramElement pictogramElement) {
+        return ResolutionScope.resolve(pictogramElement, getFeatureProvider());
+    }
+
+    /**
+     * Returns the index mapping the business objects of the current diagram to their pictogram elements.
+     * 
+     * @return the link index.
+     */
+    protected final DiagramLinkIndex getLinkIndex() {
+        return DiagramLinkIndex.get(getDiagram());
+    }
+
+    /**
+     * Returns the index of the absolute bounds of the shapes of the current diagram, for hit testing and containment queries.
+     * 
+     * @return the spatial index.
+     */
+    protected final DiagramSpatialIndex getSpatialIndex() {
+        return DiagramSpatialIndex.get(getDiagram());
+    }
+
     @Override
     public final boolean canLayout(ILayoutContext context) {
         return super.canLayout(context);
@@ -198,8 +276,9 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
      */
     protected final List<Dimension> calculateSizes(List<? extends EObject> eObjs) {
         List<Dimension> dims = Lists.newArrayList();
+        DiagramLinkIndex linkIndex = getLinkIndex();
         for (EObject eObj : eObjs) {
-            ContainerShape shape = (ContainerShape) getMappingProvider().getPictogramElementForBusinessObject(eObj);
+            ContainerShape shape = (ContainerShape) linkIndex.getPictogramElement(eObj);
             GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
             dims.add(new Dimension(ga.getWidth(), ga.getHeight()));
         }
@@ -215,14 +294,34 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
      */
     protected final List<Rectangle> calculateBounds(List<? extends EObject> eObjs) {
         List<Rectangle> rects = Lists.newArrayList();
+        DiagramLinkIndex linkIndex = getLinkIndex();
         for (EObject eObj : eObjs) {
-            ContainerShape shape = (ContainerShape) getMappingProvider().getPictogramElementForBusinessObject(eObj);
+            ContainerShape shape = (ContainerShape) linkIndex.getPictogramElement(eObj);
             GraphicsAlgorithm ga = shape.getGraphicsAlgorithm();
             rects.add(new Rectangle(ga.getX(), ga.getY(), ga.getWidth(), ga.getHeight()));
         }
         return rects;
     }
 
+    /**
+     * Extends a bounding box with the bounds of the shapes associated with a list of model objects.
+     * <p>
+     * Unlike {@link #calculateBounds(List)}, this method does not allocate intermediate rectangles.
+     * 
+     * @param eObjs
+     *            the list of model objects.
+     * @param bounds
+     *            the bounds to extend.
+     * @return {@code bounds}.
+     */
+    protected final Bounds calculateBounds(List<? extends EObject> eObjs, Bounds bounds) {
+        DiagramLinkIndex linkIndex = getLinkIndex();
+        for (int i = 0, size = eObjs.size(); i < size; i++) {
+            bounds.add(linkIndex.getPictogramElement(eObjs.get(i)).getGraphicsAlgorithm());
+        }
+        return bounds;
+    }
+
     /**
      * Calculates the size of a text.
      * 
@@ -235,10 +334,10 @@ public abstract class AbstractGfEmfShapePattern<T extends EObject> extends Abstr
      * @return the text size.
      */
     protected final Dimension calculateSize(Text text, int minWidth, int minHeight) {
-        IDimension textDim = GraphitiUi.getUiLayoutService().calculateTextSize(text.getValue(), text.getFont());
-        int width = Math.max(textDim.getWidth(), 25);
-        int height = Math.max(textDim.getHeight(), 14);
-        return new Dimension(width, height);
+        Dimension textDim = TextSizeCache.getDefault().getTextSize(text.getValue(), text.getFont());
+        textDim.width = Math.max(textDim.width, minWidth);
+        textDim.height = Math.max(textDim.height, minHeight);
+        return textDim;
     }
 
     /**
@@ -0,0 +1,117 @@
+package org.ifml.eclipse.graphiti.patterns;
+
+import org.eclipse.graphiti.features.IFeatureProvider;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.ifml.eclipse.graphiti.features.LayoutScheduler;
+import org.ifml.eclipse.graphiti.metrics.Histogram;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Defers the layout of the pictogram elements added by shape patterns until the end of a batch.
+ * <p>
+ * While a batch is open on the current thread, {@link AbstractGfEmfShapePattern} only records the pictogram elements to be laid
+ * out. When the outermost batch is closed, the recorded elements are laid out by a {@link LayoutScheduler}: each element is laid out
+ * exactly once, deepest elements first, so that children are laid out before their parents, and the parents of the resized elements
+ * are laid out as well. Batches can be nested.
+ * 
+ * <pre>
+ * LayoutBatch batch = LayoutBatch.begin();
+ * try {
+ *     ...
+ * } finally {
+ *     batch.close();
+ * }
+ * </pre>
+ */
+public final class LayoutBatch {
+
+    private static final ThreadLocal<LayoutBatch> CURRENT = new ThreadLocal<LayoutBatch>();
+
+    private static final Histogram LAYOUTS_PER_BATCH = Metrics.histogram("patterns.layoutBatch.layouts");
+
+    private final LayoutScheduler scheduler = new LayoutScheduler();
+
+    private int depth;
+
+    private int layoutCount;
+
+    private LayoutBatch() {
+    }
+
+    /**
+     * Opens a batch on the current thread, or joins the batch already open.
+     * 
+     * @return the batch to be closed at the end of the operation.
+     */
+    public static LayoutBatch begin() {
+        LayoutBatch batch = CURRENT.get();
+        if (batch == null) {
+            batch = new LayoutBatch();
+            CURRENT.set(batch);
+        }
+        batch.depth++;
+        return batch;
+    }
+
+    /**
+     * Returns whether a batch is open on the current thread.
+     * 
+     * @return {@code true} if a batch is open.
+     */
+    public static boolean isOpen() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Closes the batch. If this is the outermost batch, the recorded pictogram elements are laid out.
+     */
+    public void close() {
+        Preconditions.checkState(CURRENT.get() == this, "Batch not open on the current thread");
+        if (--depth == 0) {
+            try {
+                flush();
+            } finally {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of layouts performed when the batch was closed.
+     * 
+     * @return the number of layouts.
+     */
+    public int getLayoutCount() {
+        return layoutCount;
+    }
+
+    /**
+     * Records a pictogram element to be laid out at the end of the current batch.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @param featureProvider
+     *            the feature provider laying out the element.
+     * @return {@code true} if the layout has been deferred or is already scheduled, {@code false} if the element must be laid out
+     *         immediately.
+     */
+    static boolean defer(PictogramElement pictogramElement, IFeatureProvider featureProvider) {
+        LayoutBatch batch = CURRENT.get();
+        if (batch == null) {
+            return false;
+        }
+        if (batch.scheduler.isFlushing()) {
+            return batch.scheduler.isDirty(pictogramElement);
+        }
+        batch.scheduler.markDirty(pictogramElement, featureProvider);
+        return true;
+    }
+
+    private void flush() {
+        layoutCount += scheduler.flush();
+        LAYOUTS_PER_BATCH.record(layoutCount);
+    }
+
+}
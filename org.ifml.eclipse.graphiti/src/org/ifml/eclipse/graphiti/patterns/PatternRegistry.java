@@ -0,0 +1,124 @@
+package org.ifml.eclipse.graphiti.patterns;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.ifml.eclipse.ui.CommonUi;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Maps model classes to the patterns handling their instances.
+ * <p>
+ * Shape patterns are keyed by the exact {@link EClass} of their model objects, whereas connection patterns also apply to the
+ * sub-classes of their {@link EClass}: the connection patterns applicable to a model class are resolved once through its
+ * super-types and memoized. Ambiguous registrations, i.e. several patterns applicable to the same model class, are reported to the
+ * platform log when they are registered.
+ */
+public final class PatternRegistry {
+
+    private final Map<EClass, List<AbstractGfEmfShapePattern<?>>> shapePatterns = Maps.newHashMap();
+
+    private final List<AbstractGfEmfConnectionPattern<?>> connectionPatterns = Lists.newArrayList();
+
+    private final Map<EClass, List<AbstractGfEmfConnectionPattern<?>>> resolvedConnectionPatterns = Maps.newHashMap();
+
+    /**
+     * Registers a shape pattern.
+     * <p>
+     * If another pattern is already registered for the same model class, the ambiguity is reported.
+     * 
+     * @param pattern
+     *            the shape pattern.
+     */
+    public synchronized void register(AbstractGfEmfShapePattern<?> pattern) {
+        EClass eClass = pattern.getEClass();
+        List<AbstractGfEmfShapePattern<?>> registered = getShapePatterns(eClass);
+        if (!registered.isEmpty()) {
+            reportAmbiguity(eClass, ImmutableList.builder().addAll(registered).add(pattern).build());
+        }
+        shapePatterns.put(eClass, ImmutableList.<AbstractGfEmfShapePattern<?>> builder().addAll(registered).add(pattern).build());
+    }
+
+    /**
+     * Registers a connection pattern.
+     * <p>
+     * If another pattern is registered for the same model class, a super-class or a sub-class, the ambiguity is reported.
+     * 
+     * @param pattern
+     *            the connection pattern.
+     */
+    public synchronized void register(AbstractGfEmfConnectionPattern<?> pattern) {
+        EClass eClass = pattern.getEClass();
+        for (AbstractGfEmfConnectionPattern<?> registered : connectionPatterns) {
+            EClass registeredEClass = registered.getEClass();
+            if (registeredEClass.isSuperTypeOf(eClass) || eClass.isSuperTypeOf(registeredEClass)) {
+                reportAmbiguity(eClass, ImmutableList.of(registered, pattern));
+            }
+        }
+        connectionPatterns.add(pattern);
+        resolvedConnectionPatterns.clear();
+    }
+
+    /**
+     * Returns the shape pattern handling a model object.
+     * 
+     * @param eObject
+     *            the model object.
+     * @return the first shape pattern registered for the class of {@code eObject} or {@code null} if there is none.
+     */
+    public synchronized AbstractGfEmfShapePattern<?> getShapePattern(EObject eObject) {
+        List<AbstractGfEmfShapePattern<?>> patterns = getShapePatterns(eObject.eClass());
+        return patterns.isEmpty() ? null : patterns.get(0);
+    }
+
+    /**
+     * Returns the shape patterns handling the instances of a model class, in registration order.
+     * 
+     * @param eClass
+     *            the model class.
+     * @return the list of shape patterns.
+     */
+    public synchronized List<AbstractGfEmfShapePattern<?>> getShapePatterns(EClass eClass) {
+        List<AbstractGfEmfShapePattern<?>> patterns = shapePatterns.get(eClass);
+        return (patterns != null) ? patterns : ImmutableList.<AbstractGfEmfShapePattern<?>> of();
+    }
+
+    /**
+     * Returns the connection patterns applicable to the instances of a model class, in registration order.
+     * 
+     * @param eClass
+     *            the model class.
+     * @return the list of connection patterns.
+     */
+    public synchronized List<AbstractGfEmfConnectionPattern<?>> getConnectionPatterns(EClass eClass) {
+        List<AbstractGfEmfConnectionPattern<?>> patterns = resolvedConnectionPatterns.get(eClass);
+        if (patterns == null) {
+            ImmutableList.Builder<AbstractGfEmfConnectionPattern<?>> builder = ImmutableList.builder();
+            for (AbstractGfEmfConnectionPattern<?> pattern : connectionPatterns) {
+                if (pattern.getEClass().isSuperTypeOf(eClass)) {
+                    builder.add(pattern);
+                }
+            }
+            patterns = builder.build();
+            resolvedConnectionPatterns.put(eClass, patterns);
+        }
+        return patterns;
+    }
+
+    private static void reportAmbiguity(EClass eClass, List<?> patterns) {
+        List<String> names = Lists.newArrayList();
+        for (Object pattern : patterns) {
+            names.add(pattern.getClass().getName());
+        }
+        String msg = String.format("Ambiguous patterns for %s: %s", eClass.getName(), names);
+        CommonUi.getDefault().getLog().log(new Status(IStatus.WARNING, CommonUi.ID, msg));
+    }
+
+}
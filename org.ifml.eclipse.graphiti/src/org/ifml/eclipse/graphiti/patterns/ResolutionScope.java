@@ -0,0 +1,115 @@
+package org.ifml.eclipse.graphiti.patterns;
+
+import java.util.Map;
+
+import org.eclipse.graphiti.features.IFeatureProvider;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.ifml.eclipse.graphiti.metrics.Counter;
+import org.ifml.eclipse.graphiti.metrics.Metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * Memoizes the business objects resolved from pictogram elements during one operation, such as a layout pass, a drag update or a
+ * create.
+ * <p>
+ * A scope is bound to the current thread: it is opened at the beginning of the operation and closed at its end, usually in a
+ * {@code finally} block. Scopes can be nested, in which case the memo is discarded when the outermost scope is closed. Outside a
+ * scope, business objects are resolved through the feature provider on every request. The resolutions requested within a scope
+ * and the ones returned from its memo are recorded by the {@link Metrics} counters {@code patterns.resolution.requested} and
+ * {@code patterns.resolution.saved}.
+ * 
+ * <pre>
+ * ResolutionScope scope = ResolutionScope.open();
+ * try {
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ */
+public final class ResolutionScope {
+
+    private static final ThreadLocal<ResolutionScope> CURRENT = new ThreadLocal<ResolutionScope>();
+
+    private static final Counter REQUESTED_COUNTER = Metrics.counter("patterns.resolution.requested");
+
+    private static final Counter SAVED_COUNTER = Metrics.counter("patterns.resolution.saved");
+
+    private final Map<PictogramElement, Object> businessObjects = Maps.newHashMap();
+
+    private int depth;
+
+    private ResolutionScope() {
+    }
+
+    /**
+     * Opens a scope on the current thread, or joins the scope already open.
+     * 
+     * @return the scope to be closed at the end of the operation.
+     */
+    public static ResolutionScope open() {
+        ResolutionScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new ResolutionScope();
+            CURRENT.set(scope);
+        }
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Closes the scope, discarding the memo if this is the outermost scope.
+     */
+    public void close() {
+        Preconditions.checkState(CURRENT.get() == this, "Scope not open on the current thread");
+        if (--depth == 0) {
+            businessObjects.clear();
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Returns the business object linked to a pictogram element, using the memo of the current scope, if any.
+     * <p>
+     * Unlinked pictogram elements are not memoized, so that they can be linked during the operation.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     * @param featureProvider
+     *            the feature provider resolving the business object.
+     * @return the business object or {@code null} if the element is not linked.
+     */
+    static Object resolve(PictogramElement pictogramElement, IFeatureProvider featureProvider) {
+        ResolutionScope scope = CURRENT.get();
+        if ((scope == null) || (pictogramElement == null)) {
+            return featureProvider.getBusinessObjectForPictogramElement(pictogramElement);
+        }
+        REQUESTED_COUNTER.increment();
+        Object businessObject = scope.businessObjects.get(pictogramElement);
+        if (businessObject != null) {
+            SAVED_COUNTER.increment();
+            return businessObject;
+        }
+        businessObject = featureProvider.getBusinessObjectForPictogramElement(pictogramElement);
+        if (businessObject != null) {
+            scope.businessObjects.put(pictogramElement, businessObject);
+        }
+        return businessObject;
+    }
+
+    /**
+     * Discards the business object memoized for a pictogram element, after the element has been linked.
+     * 
+     * @param pictogramElement
+     *            the pictogram element.
+     */
+    static void evict(PictogramElement pictogramElement) {
+        ResolutionScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.businessObjects.remove(pictogramElement);
+        }
+    }
+
+}
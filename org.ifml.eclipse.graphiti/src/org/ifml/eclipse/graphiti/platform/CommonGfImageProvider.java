@@ -1,19 +1,21 @@
 package org.ifml.eclipse.graphiti.platform;
 
+import java.util.Map;
+
 import org.eclipse.graphiti.platform.AbstractExtension;
 import org.eclipse.graphiti.ui.platform.IImageProvider;
 import org.ifml.eclipse.ui.CommonUi;
 import org.ifml.eclipse.ui.graphics.CommonImage;
 import org.ifml.eclipse.ui.graphics.ImageProviders;
 
-import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * A Graphiti image provider for the images provided by {@link CommonImage}.
  */
 public final class CommonGfImageProvider extends AbstractExtension implements IImageProvider {
 
-    private static final String PREFIX = CommonImage.class.getCanonicalName() + "/";
+    private static final Map<String, String> PATHS = createPaths();
 
     @Override
     public void setPluginId(String pluginId) {
@@ -27,14 +29,22 @@ public final class CommonGfImageProvider extends AbstractExtension implements II
 
     @Override
     public String getImageFilePath(String imageId) {
-        if (imageId.startsWith(PREFIX)) {
-            try {
-                CommonImage img = CommonImage.valueOf(imageId.substring(PREFIX.length()));
-                return Objects.firstNonNull(img.getSharedSymbolicName(), ImageProviders.getPath(img));
-            } catch (IllegalArgumentException e) {
+        return PATHS.get(imageId);
+    }
+
+    private static Map<String, String> createPaths() {
+        String prefix = CommonImage.class.getCanonicalName() + "/";
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        for (CommonImage img : CommonImage.values()) {
+            String path = img.getSharedSymbolicName();
+            if (path == null) {
+                path = ImageProviders.getPath(img);
+            }
+            if (path != null) {
+                builder.put(prefix + img.name(), path);
             }
         }
-        return null;
+        return builder.build();
     }
 
 }
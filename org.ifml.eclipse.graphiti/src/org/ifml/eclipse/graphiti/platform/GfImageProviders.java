@@ -1,12 +1,28 @@
 package org.ifml.eclipse.graphiti.platform;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.graphiti.ui.services.GraphitiUi;
+import org.eclipse.swt.widgets.Display;
 import org.ifml.eclipse.ui.graphics.IImageProvider;
+import org.ifml.eclipse.ui.widgets.Displays;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * Provides utility methods for Graphiti image providers.
  */
 public final class GfImageProviders {
 
+    private static final ConcurrentMap<Class<?>, Map<?, String>> ID_TABLES = new ConcurrentHashMap<Class<?>, Map<?, String>>();
+
     private GfImageProviders() {
     }
 
@@ -18,11 +34,71 @@ public final class GfImageProviders {
      * @return the image identifier.
      */
     public static <T extends Enum<T> & IImageProvider> String getId(T imageProvider) {
-        StringBuffer buffer = new StringBuffer();
-        buffer.append(imageProvider.getClass().getCanonicalName());
-        buffer.append('/');
-        buffer.append(imageProvider.name());
-        return buffer.toString();
+        return getIds(imageProvider.getDeclaringClass()).get(imageProvider);
+    }
+
+    /**
+     * Returns the image identifiers of all the image providers of an enumeration.
+     * <p>
+     * The table is built once per enumeration and shared.
+     * 
+     * @param enumClass
+     *            the enumeration class.
+     * @return the immutable map from image providers to image identifiers.
+     */
+    public static <T extends Enum<T> & IImageProvider> Map<T, String> getIds(Class<T> enumClass) {
+        @SuppressWarnings("unchecked")
+        Map<T, String> ids = (Map<T, String>) ID_TABLES.get(enumClass);
+        if (ids == null) {
+            ImmutableMap.Builder<T, String> builder = ImmutableMap.builder();
+            for (T imageProvider : enumClass.getEnumConstants()) {
+                builder.put(imageProvider, imageProvider.getClass().getCanonicalName() + "/" + imageProvider.name());
+            }
+            ids = builder.build();
+            ID_TABLES.putIfAbsent(enumClass, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Schedules a background job loading the images of an enumeration into the Graphiti image registry, so that palettes and
+     * decorators do not load them on first display.
+     * 
+     * @param enumClass
+     *            the enumeration class.
+     * @return the scheduled job.
+     */
+    public static <T extends Enum<T> & IImageProvider> Job warmUp(Class<T> enumClass) {
+        final ImmutableList<String> imageIds = ImmutableList.copyOf(getIds(enumClass).values());
+        Job job = new Job("Loading images") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                monitor.beginTask(getName(), imageIds.size());
+                try {
+                    Display display = Displays.getDisplay();
+                    for (final String imageId : imageIds) {
+                        if (monitor.isCanceled() || display.isDisposed()) {
+                            return Status.CANCEL_STATUS;
+                        }
+                        display.syncExec(new Runnable() {
+                            @Override
+                            public void run() {
+                                GraphitiUi.getImageService().getImageForId(imageId);
+                            }
+                        });
+                        monitor.worked(1);
+                    }
+                    return Status.OK_STATUS;
+                } finally {
+                    monitor.done();
+                }
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        job.schedule();
+        return job;
     }
 
 }
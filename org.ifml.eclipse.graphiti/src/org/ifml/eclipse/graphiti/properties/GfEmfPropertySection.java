@@ -1,36 +1,51 @@
 package org.ifml.eclipse.graphiti.properties;
 
+import java.util.Map;
+
 import org.eclipse.core.databinding.observable.ChangeEvent;
 import org.eclipse.core.databinding.observable.IChangeListener;
 import org.eclipse.core.databinding.observable.value.IObservableValue;
-import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.transaction.RecordingCommand;
 import org.eclipse.emf.transaction.TransactionalEditingDomain;
-import org.eclipse.gef.EditPart;
 import org.eclipse.graphiti.dt.IDiagramTypeProvider;
+import org.eclipse.graphiti.features.IFeatureProvider;
 import org.eclipse.graphiti.features.context.impl.LayoutContext;
 import org.eclipse.graphiti.mm.pictograms.PictogramElement;
 import org.eclipse.graphiti.platform.IDiagramEditor;
-import org.eclipse.graphiti.services.Graphiti;
-import org.eclipse.graphiti.ui.editor.DiagramEditor;
 import org.eclipse.graphiti.ui.platform.AbstractPropertySectionFilter;
 import org.eclipse.jface.viewers.IFilter;
-import org.eclipse.jface.viewers.StructuredSelection;
-import org.eclipse.ui.IEditorPart;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IWorkbenchPart;
-import org.eclipse.ui.forms.editor.FormEditor;
-import org.eclipse.ui.part.IContributedContentsView;
 import org.eclipse.ui.views.properties.tabbed.ITabbedPropertyConstants;
 import org.ifml.base.Objects2;
 import org.ifml.eclipse.emf.ui.editparts.EditPartEmfSelections;
 import org.ifml.eclipse.emf.ui.properties.EmfPropertySection;
 import org.ifml.eclipse.emf.ui.properties.EmfPropertyConfigurationSet;
+import org.ifml.eclipse.graphiti.features.LayoutScheduler;
+import org.ifml.eclipse.ui.widgets.Displays;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 /**
  * A property section for Graphiti-based EMF models.
+ * <p>
+ * The pictogram elements, business objects and diagram editor of the current selection are resolved once for all the sections.
+ * <p>
+ * The selected pictogram element is laid out when the edited model changes. Changes made through a text field, which are
+ * committed on every keystroke, are coalesced: the element is laid out once when the field loses the focus or its contents are
+ * confirmed with Enter. Other changes are laid out once per transaction and within the same transaction through the
+ * {@link LayoutScheduler} of the editing domain, so that an edit and its layout are undone together.
  * 
  * @param <T>
  *            the model type.
@@ -39,6 +54,25 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
 
     private final IFilter peFilter = new PictogramElementPropertySectionFilter();
 
+    private final Map<PictogramElement, IFeatureProvider> pendingLayouts = Maps.newLinkedHashMap();
+
+    private final Listener commitListener = new Listener() {
+        @Override
+        public void handleEvent(Event event) {
+            if (event.type != SWT.DefaultSelection) {
+                event.widget.removeListener(SWT.FocusOut, this);
+                event.widget.removeListener(SWT.DefaultSelection, this);
+                event.widget.removeListener(SWT.Dispose, this);
+                editedControl = null;
+            }
+            flushPendingLayouts();
+        }
+    };
+
+    private Control editedControl;
+
+    private TransactionalEditingDomain pendingDomain;
+
     /**
      * Constructs a new property section.
      * 
@@ -63,32 +97,7 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
     }
 
     private IDiagramEditor getDiagramEditor() {
-        IWorkbenchPart part = getPart();
-        if (part instanceof FormEditor) {
-            IDiagramEditor diagramEditor = getDiagramEditor((FormEditor) part);
-            if (diagramEditor != null) {
-                return diagramEditor;
-            }
-        }
-        IContributedContentsView contributedView = (IContributedContentsView) part.getAdapter(IContributedContentsView.class);
-        if (contributedView != null) {
-            part = contributedView.getContributingPart();
-            if (part instanceof FormEditor) {
-                IDiagramEditor diagramEditor = getDiagramEditor((FormEditor) part);
-                if (diagramEditor != null) {
-                    return diagramEditor;
-                }
-            }
-        }
-        return null;
-    }
-
-    private IDiagramEditor getDiagramEditor(FormEditor formEditor) {
-        IEditorPart activePart = formEditor.getActiveEditor();
-        if (activePart instanceof DiagramEditor) {
-            return (DiagramEditor) activePart;
-        }
-        return null;
+        return SelectionResolutionCache.getDiagramEditor(getPart());
     }
 
     private IDiagramTypeProvider getDiagramTypeProvider() {
@@ -108,8 +117,7 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
     public Optional<T> getSingleSelection() {
         PictogramElement pe = getSelectedPictogramElement();
         if (pe != null) {
-            return Optional.fromNullable(Objects2.as(Graphiti.getLinkService().getBusinessObjectForLinkedPictogramElement(pe),
-                    getInstanceClass()));
+            return Optional.fromNullable(Objects2.as(SelectionResolutionCache.resolve(pe).getBusinessObject(), getInstanceClass()));
         } else { // content outline tree node
             return Optional.fromNullable(Objects2.as(EditPartEmfSelections.getSingleModelObject(getSelection(), getInstanceClass()),
                     getInstanceClass()));
@@ -117,23 +125,7 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
     }
 
     private PictogramElement getSelectedPictogramElement() {
-        if (getSelection() instanceof StructuredSelection) {
-            StructuredSelection structuredSelection = (StructuredSelection) getSelection();
-            Object firstElement = structuredSelection.getFirstElement();
-            if (firstElement instanceof PictogramElement) {
-                return (PictogramElement) firstElement;
-            }
-            EditPart editPart = null;
-            if (firstElement instanceof EditPart) {
-                editPart = (EditPart) firstElement;
-            } else if (firstElement instanceof IAdaptable) {
-                editPart = (EditPart) ((IAdaptable) firstElement).getAdapter(EditPart.class);
-            }
-            if (editPart != null && editPart.getModel() instanceof PictogramElement) {
-                return (PictogramElement) editPart.getModel();
-            }
-        }
-        return null;
+        return SelectionResolutionCache.getSelectedPictogramElement(getSelection());
     }
 
     @Override
@@ -142,12 +134,91 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
 
             @Override
             public void handleChange(ChangeEvent event) {
-                LayoutContext context = new LayoutContext(getSelectedPictogramElement());
-                getDiagramTypeProvider().getFeatureProvider().layoutIfPossible(context);
+                scheduleLayout(getSelectedPictogramElement());
             }
         });
     }
 
+    private void scheduleLayout(PictogramElement pe) {
+        IDiagramTypeProvider dtp = getDiagramTypeProvider();
+        if ((pe == null) || (dtp == null)) {
+            return;
+        }
+        IFeatureProvider featureProvider = dtp.getFeatureProvider();
+        TransactionalEditingDomain domain = getEditingDomain();
+        Control focusControl = Displays.getDisplay().getFocusControl();
+        if (isTextControl(focusControl)) {
+            if (focusControl != editedControl) {
+                flushPendingLayouts();
+                focusControl.addListener(SWT.FocusOut, commitListener);
+                focusControl.addListener(SWT.DefaultSelection, commitListener);
+                focusControl.addListener(SWT.Dispose, commitListener);
+                editedControl = focusControl;
+            }
+            pendingLayouts.put(pe, featureProvider);
+            pendingDomain = domain;
+        } else if (LayoutScheduler.canDefer(domain)) {
+            LayoutScheduler.get(domain).markDirty(pe, featureProvider);
+        } else {
+            featureProvider.layoutIfPossible(new LayoutContext(pe));
+        }
+    }
+
+    private static boolean isTextControl(Control control) {
+        return (control instanceof Text) || (control instanceof StyledText)
+                || ((control instanceof Combo) && ((control.getStyle() & SWT.READ_ONLY) == 0));
+    }
+
+    /**
+     * Lays out the elements changed through the text field being edited, in the running write transaction if any, otherwise in a
+     * single command.
+     */
+    private void flushPendingLayouts() {
+        if (pendingLayouts.isEmpty()) {
+            return;
+        }
+        final Map<PictogramElement, IFeatureProvider> layouts = ImmutableMap.copyOf(pendingLayouts);
+        final TransactionalEditingDomain domain = pendingDomain;
+        pendingLayouts.clear();
+        pendingDomain = null;
+        if (LayoutScheduler.canDefer(domain)) {
+            LayoutScheduler scheduler = LayoutScheduler.get(domain);
+            for (Map.Entry<PictogramElement, IFeatureProvider> entry : layouts.entrySet()) {
+                scheduler.markDirty(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        domain.getCommandStack().execute(new RecordingCommand(domain, "Layout") {
+            @Override
+            protected void doExecute() {
+                for (Map.Entry<PictogramElement, IFeatureProvider> entry : layouts.entrySet()) {
+                    if (entry.getKey().eResource() != null) {
+                        entry.getValue().layoutIfPossible(new LayoutContext(entry.getKey()));
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        if ((editedControl != null) && !editedControl.isDisposed()) {
+            editedControl.removeListener(SWT.FocusOut, commitListener);
+            editedControl.removeListener(SWT.DefaultSelection, commitListener);
+            editedControl.removeListener(SWT.Dispose, commitListener);
+        }
+        editedControl = null;
+        flushPendingLayouts();
+        super.dispose();
+    }
+
+    @Override
+    public void setInput(IWorkbenchPart part, ISelection selection) {
+        flushPendingLayouts();
+        SelectionResolutionCache.selectionChanged(part, selection);
+        super.setInput(part, selection);
+    }
+
     @Override
     protected TransactionalEditingDomain getEditingDomain() {
         return getDiagramEditor().getEditingDomain();
@@ -157,10 +228,8 @@ public final class GfEmfPropertySection<T extends EObject> extends EmfPropertySe
 
         @Override
         protected boolean accept(PictogramElement pictogramElement) {
-            EObject eObj = Objects2.as(Graphiti.getLinkService().getBusinessObjectForLinkedPictogramElement(pictogramElement),
-                    EObject.class);
-            return (eObj != null) && (eObj.eClass() == getEClass());
+            return SelectionResolutionCache.resolve(pictogramElement).getEClass() == getEClass();
         }
     }
 
-}
\ No newline at end of file
+}
\ No newline at end of file
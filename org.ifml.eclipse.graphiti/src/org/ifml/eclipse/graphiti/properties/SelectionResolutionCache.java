@@ -0,0 +1,284 @@
+package org.ifml.eclipse.graphiti.properties;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IAdaptable;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.gef.EditPart;
+import org.eclipse.graphiti.mm.pictograms.PictogramElement;
+import org.eclipse.graphiti.platform.IDiagramEditor;
+import org.eclipse.graphiti.services.Graphiti;
+import org.eclipse.graphiti.ui.editor.DiagramEditor;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IPartListener;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartSite;
+import org.eclipse.ui.forms.editor.FormEditor;
+import org.eclipse.ui.part.IContributedContentsView;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+
+/**
+ * Resolves the selected pictogram elements, their business objects and the diagram editor once for all the
+ * {@link GfEmfPropertySection}s and their filters.
+ * <p>
+ * The resolutions are kept until the selection changes, i.e. until a section receives a different selection as input. Filters
+ * may resolve elements of a selection which never reaches any section: the cache only holds weak references to the pictogram
+ * elements, the selection and the workbench parts, and it is cleared when the part owning the selection is deactivated or
+ * closed, so that such resolutions do not outlive the diagram editor. Property sections only run in the UI thread, so the cache
+ * is not synchronized.
+ */
+final class SelectionResolutionCache {
+
+    private static final Map<PictogramElement, Resolution> resolutions = new MapMaker().weakKeys().makeMap();
+
+    private static final Set<IWorkbenchPage> observedPages = Sets.newSetFromMap(new MapMaker().weakKeys()
+            .<IWorkbenchPage, Boolean> makeMap());
+
+    private static final IPartListener partListener = new PartListener();
+
+    private static Reference<IWorkbenchPart> currentPart = newReference(null);
+
+    private static Reference<ISelection> currentSelection = newReference(null);
+
+    private static Reference<PictogramElement> selectedPictogramElement = newReference(null);
+
+    private static Reference<IWorkbenchPart> cachedPart = newReference(null);
+
+    private static Reference<IDiagramEditor> cachedDiagramEditor = newReference(null);
+
+    private SelectionResolutionCache() {
+    }
+
+    /**
+     * Records the selection received by a property section, discarding the resolutions of the elements no longer selected if the
+     * selection changed.
+     * 
+     * @param part
+     *            the workbench part owning the selection.
+     * @param selection
+     *            the selection.
+     */
+    static void selectionChanged(IWorkbenchPart part, ISelection selection) {
+        if ((part == currentPart.get()) && Objects.equal(selection, currentSelection.get())) {
+            return;
+        }
+        observe(part);
+        currentPart = newReference(part);
+        currentSelection = newReference(selection);
+        selectedPictogramElement = newReference(getPictogramElement(selection));
+        Set<PictogramElement> selectedPes = Sets.newHashSet();
+        if (selection instanceof IStructuredSelection) {
+            for (Object element : ((IStructuredSelection) selection).toList()) {
+                PictogramElement pe = toPictogramElement(element);
+                if (pe != null) {
+                    selectedPes.add(pe);
+                }
+            }
+        }
+        for (Iterator<PictogramElement> i = resolutions.keySet().iterator(); i.hasNext();) {
+            if (!selectedPes.contains(i.next())) {
+                i.remove();
+            }
+        }
+        cachedPart = newReference(null);
+        cachedDiagramEditor = newReference(null);
+    }
+
+    /**
+     * Discards all the resolutions and the references to the current selection and parts.
+     */
+    static void clear() {
+        resolutions.clear();
+        currentPart = newReference(null);
+        currentSelection = newReference(null);
+        selectedPictogramElement = newReference(null);
+        cachedPart = newReference(null);
+        cachedDiagramEditor = newReference(null);
+    }
+
+    /**
+     * Returns the pictogram element of the first element of a selection.
+     * 
+     * @param selection
+     *            the selection.
+     * @return the pictogram element or {@code null} if the first element is not a pictogram element or its edit part.
+     */
+    static PictogramElement getSelectedPictogramElement(ISelection selection) {
+        if (Objects.equal(selection, currentSelection.get())) {
+            return selectedPictogramElement.get();
+        }
+        return getPictogramElement(selection);
+    }
+
+    /**
+     * Returns the resolution of a pictogram element, resolving it if needed.
+     * 
+     * @param pe
+     *            the pictogram element.
+     * @return the resolution.
+     */
+    static Resolution resolve(PictogramElement pe) {
+        Resolution resolution = resolutions.get(pe);
+        if (resolution == null) {
+            resolution = new Resolution(Graphiti.getLinkService().getBusinessObjectForLinkedPictogramElement(pe));
+            resolutions.put(pe, resolution);
+        }
+        return resolution;
+    }
+
+    /**
+     * Returns the diagram editor of a workbench part, which can be a form editor holding the diagram editor or a view contributed by
+     * such an editor.
+     * 
+     * @param part
+     *            the workbench part.
+     * @return the diagram editor or {@code null} if there is none.
+     */
+    static IDiagramEditor getDiagramEditor(IWorkbenchPart part) {
+        IDiagramEditor diagramEditor = cachedDiagramEditor.get();
+        if ((diagramEditor == null) || (cachedPart.get() != part)) {
+            diagramEditor = resolveDiagramEditor(part);
+            cachedDiagramEditor = newReference(diagramEditor);
+            cachedPart = newReference(part);
+        }
+        return diagramEditor;
+    }
+
+    private static void observe(IWorkbenchPart part) {
+        IWorkbenchPartSite site = (part != null) ? part.getSite() : null;
+        IWorkbenchPage page = (site != null) ? site.getPage() : null;
+        if ((page != null) && observedPages.add(page)) {
+            page.addPartListener(partListener);
+        }
+    }
+
+    private static <T> Reference<T> newReference(T referent) {
+        return new WeakReference<T>(referent);
+    }
+
+    private static IDiagramEditor resolveDiagramEditor(IWorkbenchPart part) {
+        if (part instanceof FormEditor) {
+            IDiagramEditor diagramEditor = getDiagramEditor((FormEditor) part);
+            if (diagramEditor != null) {
+                return diagramEditor;
+            }
+        }
+        IContributedContentsView contributedView = (IContributedContentsView) part.getAdapter(IContributedContentsView.class);
+        if (contributedView != null) {
+            part = contributedView.getContributingPart();
+            if (part instanceof FormEditor) {
+                IDiagramEditor diagramEditor = getDiagramEditor((FormEditor) part);
+                if (diagramEditor != null) {
+                    return diagramEditor;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static IDiagramEditor getDiagramEditor(FormEditor formEditor) {
+        IEditorPart activePart = formEditor.getActiveEditor();
+        if (activePart instanceof DiagramEditor) {
+            return (DiagramEditor) activePart;
+        }
+        return null;
+    }
+
+    private static PictogramElement getPictogramElement(ISelection selection) {
+        if (selection instanceof IStructuredSelection) {
+            return toPictogramElement(((IStructuredSelection) selection).getFirstElement());
+        }
+        return null;
+    }
+
+    private static PictogramElement toPictogramElement(Object element) {
+        if (element instanceof PictogramElement) {
+            return (PictogramElement) element;
+        }
+        EditPart editPart = null;
+        if (element instanceof EditPart) {
+            editPart = (EditPart) element;
+        } else if (element instanceof IAdaptable) {
+            editPart = (EditPart) ((IAdaptable) element).getAdapter(EditPart.class);
+        }
+        if (editPart != null && editPart.getModel() instanceof PictogramElement) {
+            return (PictogramElement) editPart.getModel();
+        }
+        return null;
+    }
+
+    /**
+     * Clears the cache when the part owning the selection, or the part whose diagram editor is cached, is deactivated or closed.
+     */
+    private static final class PartListener implements IPartListener {
+
+        @Override
+        public void partActivated(IWorkbenchPart part) {
+        }
+
+        @Override
+        public void partBroughtToTop(IWorkbenchPart part) {
+        }
+
+        @Override
+        public void partClosed(IWorkbenchPart part) {
+            partReleased(part);
+        }
+
+        @Override
+        public void partDeactivated(IWorkbenchPart part) {
+            partReleased(part);
+        }
+
+        @Override
+        public void partOpened(IWorkbenchPart part) {
+        }
+
+        private void partReleased(IWorkbenchPart part) {
+            if ((part == currentPart.get()) || (part == cachedPart.get())) {
+                clear();
+            }
+        }
+
+    }
+
+    /**
+     * The business object linked to a pictogram element.
+     * <p>
+     * The business object is weakly referenced, since it reaches the pictogram element through its resource set and would
+     * otherwise keep the weak key of the resolution alive. It cannot be collected while the pictogram element is reachable,
+     * because the link of the element refers to it.
+     */
+    static final class Resolution {
+
+        private final Reference<Object> businessObject;
+
+        private final EClass eClass;
+
+        Resolution(Object businessObject) {
+            this.businessObject = newReference(businessObject);
+            this.eClass = (businessObject instanceof EObject) ? ((EObject) businessObject).eClass() : null;
+        }
+
+        Object getBusinessObject() {
+            return businessObject.get();
+        }
+
+        EClass getEClass() {
+            return eClass;
+        }
+
+    }
+
+}
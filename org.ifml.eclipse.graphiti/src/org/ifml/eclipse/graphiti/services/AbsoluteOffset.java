@@ -0,0 +1,117 @@
+package org.ifml.eclipse.graphiti.services;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.graphiti.mm.algorithms.AlgorithmsPackage;
+import org.eclipse.graphiti.mm.algorithms.GraphicsAlgorithm;
+import org.eclipse.graphiti.mm.pictograms.ContainerShape;
+import org.eclipse.graphiti.mm.pictograms.Diagram;
+import org.eclipse.graphiti.mm.pictograms.PictogramsPackage;
+
+/**
+ * Caches the absolute offset of a container shape relative to its ancestor diagram.
+ * <p>
+ * The offset is attached to the container shape and to its graphics algorithm. All the offsets computed within a diagram share
+ * the generation counter of the diagram: moving or reparenting any observed container, or replacing its graphics algorithm,
+ * increments the counter, so that every offset of the diagram is recomputed lazily on the next query.
+ */
+final class AbsoluteOffset extends AdapterImpl {
+
+    private final ContainerShape containerShape;
+
+    private GraphicsAlgorithm ga;
+
+    private Generation generation;
+
+    private long validGeneration = -1;
+
+    private int x;
+
+    private int y;
+
+    private AbsoluteOffset(ContainerShape containerShape) {
+        this.containerShape = containerShape;
+        if (containerShape instanceof Diagram) {
+            generation = new Generation();
+        } else {
+            ga = containerShape.getGraphicsAlgorithm();
+            if (ga != null) {
+                ga.eAdapters().add(this);
+            }
+        }
+    }
+
+    static AbsoluteOffset get(ContainerShape containerShape) {
+        for (Adapter adapter : containerShape.eAdapters()) {
+            if ((adapter instanceof AbsoluteOffset) && (((AbsoluteOffset) adapter).containerShape == containerShape)) {
+                return (AbsoluteOffset) adapter;
+            }
+        }
+        AbsoluteOffset offset = new AbsoluteOffset(containerShape);
+        containerShape.eAdapters().add(offset);
+        return offset;
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        if (msg.isTouch()) {
+            return;
+        }
+        Object feature = msg.getFeature();
+        if ((feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__X)
+                || (feature == AlgorithmsPackage.Literals.GRAPHICS_ALGORITHM__Y)
+                || (feature == PictogramsPackage.Literals.SHAPE__CONTAINER)) {
+            invalidate();
+        } else if (feature == PictogramsPackage.Literals.PICTOGRAM_ELEMENT__GRAPHICS_ALGORITHM) {
+            if (ga != null) {
+                ga.eAdapters().remove(this);
+            }
+            ga = containerShape.getGraphicsAlgorithm();
+            if (ga != null) {
+                ga.eAdapters().add(this);
+            }
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        if (generation != null) {
+            generation.value++;
+        }
+    }
+
+    private void validate() {
+        if ((generation != null) && (validGeneration == generation.value)) {
+            return;
+        }
+        if (containerShape instanceof Diagram) {
+            x = 0;
+            y = 0;
+        } else {
+            AbsoluteOffset parent = get(containerShape.getContainer());
+            parent.validate();
+            generation = parent.generation;
+            x = parent.x + ga.getX();
+            y = parent.y + ga.getY();
+        }
+        validGeneration = generation.value;
+    }
+
+    int getX() {
+        validate();
+        return x;
+    }
+
+    int getY() {
+        validate();
+        return y;
+    }
+
+    private static final class Generation {
+
+        private long value;
+
+    }
+
+}
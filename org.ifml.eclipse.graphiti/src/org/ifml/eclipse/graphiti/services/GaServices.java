@@ -1,8 +1,8 @@
 package org.ifml.eclipse.graphiti.services;
 
 import org.eclipse.graphiti.mm.pictograms.ContainerShape;
-import org.eclipse.graphiti.mm.pictograms.Diagram;
 import org.eclipse.swt.graphics.Point;
+import org.ifml.eclipse.graphiti.geometry.Bounds;
 
 import com.google.common.base.Preconditions;
 
@@ -24,10 +24,8 @@ public final class GaServices {
     public static final int getMaxX(int[] xy) {
         Preconditions.checkArgument(xy.length > 0, "Empty array of coordinates");
         int max = Integer.MIN_VALUE;
-        for (int i = 0; i < xy.length; i++) {
-            if ((i % 2) == 0) {
-                max = Math.max(max, xy[i]);
-            }
+        for (int i = 0; i < xy.length; i += 2) {
+            max = Math.max(max, xy[i]);
         }
         return max;
     }
@@ -42,16 +40,51 @@ public final class GaServices {
     public static final int getMaxY(int[] xy) {
         Preconditions.checkArgument(xy.length > 1, "Invalid array of coordinates");
         int max = Integer.MIN_VALUE;
-        for (int i = 0; i < xy.length; i++) {
-            if ((i % 2) == 1) {
-                max = Math.max(max, xy[i]);
-            }
+        for (int i = 1; i < xy.length; i += 2) {
+            max = Math.max(max, xy[i]);
         }
         return max;
     }
 
+    /**
+     * Extends a bounding box with all the points of an array of coordinates, in a single pass.
+     * 
+     * @param xy
+     *            the array of coordinates, alternating horizontal and vertical values.
+     * @param bounds
+     *            the bounds to extend.
+     * @return {@code bounds}.
+     */
+    public static final Bounds getBounds(int[] xy, Bounds bounds) {
+        Preconditions.checkArgument((xy.length % 2) == 0, "Invalid array of coordinates");
+        if (xy.length == 0) {
+            return bounds;
+        }
+        int minX = xy[0];
+        int maxX = xy[0];
+        int minY = xy[1];
+        int maxY = xy[1];
+        for (int i = 2; i < xy.length; i += 2) {
+            int x = xy[i];
+            int y = xy[i + 1];
+            if (x < minX) {
+                minX = x;
+            } else if (x > maxX) {
+                maxX = x;
+            }
+            if (y < minY) {
+                minY = y;
+            } else if (y > maxY) {
+                maxY = y;
+            }
+        }
+        return bounds.add(minX, minY, maxX - minX, maxY - minY);
+    }
+
     /**
      * Transforms a pair of coordinates into an absolute point relative to the ancestor diagram.
+     * <p>
+     * The absolute offset of {@code containerShape} is cached until any of its ancestors is moved or reparented.
      * 
      * @param x
      *            the horizontal coordinate relative to {@code containerShape}.
@@ -62,11 +95,31 @@ public final class GaServices {
      * @return the absolute position relative to the ancestor diagram.
      */
     public static final Point toAbsolute(int x, int y, ContainerShape containerShape) {
-        while (!(containerShape instanceof Diagram)) {
-            x = containerShape.getGraphicsAlgorithm().getX() + x;
-            y = containerShape.getGraphicsAlgorithm().getY() + y;
-            containerShape = containerShape.getContainer();
+        AbsoluteOffset offset = AbsoluteOffset.get(containerShape);
+        return new Point(offset.getX() + x, offset.getY() + y);
+    }
+
+    /**
+     * Transforms an array of coordinates relative to the same container shape into absolute coordinates relative to the ancestor
+     * diagram.
+     * <p>
+     * The coordinates are transformed in place.
+     * 
+     * @param xy
+     *            the array of coordinates, alternating horizontal and vertical values.
+     * @param containerShape
+     *            the container shape.
+     * @return {@code xy}.
+     */
+    public static final int[] toAbsolute(int[] xy, ContainerShape containerShape) {
+        Preconditions.checkArgument((xy.length % 2) == 0, "Invalid array of coordinates");
+        AbsoluteOffset offset = AbsoluteOffset.get(containerShape);
+        int offsetX = offset.getX();
+        int offsetY = offset.getY();
+        for (int i = 0; i < xy.length; i += 2) {
+            xy[i] += offsetX;
+            xy[i + 1] += offsetY;
         }
-        return new Point(x, y);
+        return xy;
     }
 }
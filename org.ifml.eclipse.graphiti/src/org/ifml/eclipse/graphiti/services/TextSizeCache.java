@@ -0,0 +1,166 @@
+package org.ifml.eclipse.graphiti.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.graphiti.datatypes.IDimension;
+import org.eclipse.graphiti.mm.algorithms.styles.Font;
+import org.eclipse.graphiti.ui.services.GraphitiUi;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded cache of text sizes measured by the Graphiti UI layout service.
+ * <p>
+ * Sizes are keyed by string value, font name, font size and font style; the least recently used entries are evicted when the
+ * cache is full.
+ */
+public final class TextSizeCache {
+
+    private static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final int BOLD = 1;
+
+    private static final int ITALIC = 2;
+
+    private static final TextSizeCache DEFAULT = new TextSizeCache(DEFAULT_MAX_SIZE);
+
+    private final Map<Key, Dimension> sizes;
+
+    private long hitCount;
+
+    private long missCount;
+
+    /**
+     * Constructs a new cache.
+     * 
+     * @param maxSize
+     *            the maximum number of cached sizes.
+     */
+    public TextSizeCache(final int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "Invalid maximum size: %s", maxSize);
+        this.sizes = new LinkedHashMap<Key, Dimension>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Dimension> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by all patterns.
+     * 
+     * @return the default cache.
+     */
+    public static TextSizeCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the size of a text rendered with a specific font.
+     * 
+     * @param value
+     *            the text value.
+     * @param font
+     *            the font, may be {@code null}.
+     * @return a new dimension holding the text size.
+     */
+    public Dimension getTextSize(String value, Font font) {
+        Key key = new Key(value, font);
+        synchronized (this) {
+            Dimension size = sizes.get(key);
+            if (size != null) {
+                hitCount++;
+                return size.getCopy();
+            }
+            missCount++;
+        }
+        IDimension textDim = GraphitiUi.getUiLayoutService().calculateTextSize(value, font);
+        Dimension size = new Dimension(textDim.getWidth(), textDim.getHeight());
+        synchronized (this) {
+            sizes.put(key, size);
+        }
+        return size.getCopy();
+    }
+
+    /**
+     * Returns the number of sizes served from the cache.
+     * 
+     * @return the hit count.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of sizes measured by the layout service.
+     * 
+     * @return the miss count.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of cached sizes.
+     * 
+     * @return the cache size.
+     */
+    public synchronized int size() {
+        return sizes.size();
+    }
+
+    /**
+     * Removes all the cached sizes and resets the counters.
+     */
+    public synchronized void clear() {
+        sizes.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    private static final class Key {
+
+        private final String value;
+
+        private final String fontName;
+
+        private final int fontSize;
+
+        private final int fontStyle;
+
+        Key(String value, Font font) {
+            this.value = value;
+            if (font != null) {
+                this.fontName = font.getName();
+                this.fontSize = font.getSize();
+                this.fontStyle = (font.isBold() ? BOLD : 0) | (font.isItalic() ? ITALIC : 0);
+            } else {
+                this.fontName = null;
+                this.fontSize = 0;
+                this.fontStyle = 0;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (fontSize == other.fontSize) && (fontStyle == other.fontStyle) && Objects.equal(value, other.value)
+                    && Objects.equal(fontName, other.fontName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(value, fontName, fontSize, fontStyle);
+        }
+    }
+
+}